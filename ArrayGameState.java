@@ -0,0 +1,440 @@
+import java.util.*;
+
+/**
+ * Game state backed by a 2-dimensional array. Works for any board size, but every move generation and capture walks
+ * the board one cell at a time.
+ */
+class ArrayGameState extends BetterGameState {
+    private final int[][] board;        // Possible values: 0 (empty), 1 (black), 2 (white)
+    private final int[] regions;        // See regions()
+    private final int[][] regionCounts; // Number of tokens per player and region
+    private final int[] emptyNeighbours;// Number of empty positions around each position
+    private final int[] frontierCounts; // Number of tokens per player that have an empty neighbour
+
+    //************ Constructors ****************//
+
+    /**
+     * Initializes a square board with the number of columns and rows equal to the given size.
+     * The two middle positions on the left-leaning diagonal contains tokens for black (player 1),
+     * the two middle positions on the right-leaning diagonal contains token for white (player 2).
+     *
+     * @param size          Number of columns (and number of rows) in the board. Should be an even number
+     *                      greater or equal to 4.
+     * @param playerToStart The player who will go first. Should be 1 (black) or 2 (white).
+     */
+    public ArrayGameState(int size, int playerToStart) {
+        this(startBoard(size), playerToStart, 2, 2);
+    }
+
+    private static int[][] startBoard(int size) {
+        var board = new int[size][size];
+        int half = size / 2 - 1;
+        board[half][half] = 1;
+        board[half + 1][half + 1] = 1;
+        board[half][half + 1] = 2;
+        board[half + 1][half] = 2;
+        return board;
+    }
+
+    /**
+     * Constructs a new game state that equals the one represented by the supplied board and player.
+     *
+     * @param board            The 2 dimensions of the array should have equal length, and possible values should be
+     *                         0 (empty), 1 (black) or 2 (white).
+     * @param playerToTakeTurn The player who will be the first to take a turn. Should be 1 (black)
+     *                         or 2 (white)
+     * @param black            The number of black tokens on the board.
+     * @param white            The number of white tokens on the board.
+     */
+    public ArrayGameState(int[][] board, int playerToTakeTurn, int black, int white) {
+        super(board.length, playerToTakeTurn, black, white);
+        this.board = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(board[i], 0, this.board[i], 0, size);
+        }
+        hash = computeHash();
+
+        regions = regions(size);
+        regionCounts = new int[2][REGIONS];
+        emptyNeighbours = new int[size * size];
+        frontierCounts = new int[2];
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                for (int deltaX = -1; deltaX <= 1; deltaX++) {
+                    for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                        var c = col + deltaX;
+                        var r = row + deltaY;
+                        if ((deltaX != 0 || deltaY != 0) && 0 <= c && c < size && 0 <= r && r < size
+                                && this.board[c][r] == 0) {
+                            emptyNeighbours[col * size + row]++;
+                        }
+                    }
+                }
+                var token = this.board[col][row];
+                if (token != 0) {
+                    regionCounts[token - 1][regions[col * size + row]]++;
+                    if (emptyNeighbours[col * size + row] > 0) {
+                        frontierCounts[token - 1]++;
+                    }
+                }
+            }
+        }
+    }
+
+    public ArrayGameState(GameState s) {
+        this(s.getBoard(), s.getPlayerInTurn(), 0, 0);
+        var tokens = countTokens(s.getBoard());
+        blackTokens = tokens[0];
+        whiteTokens = tokens[1];
+    }
+
+    public ArrayGameState(ArrayGameState s) {
+        this(s.board, s.getPlayerInTurn(), s.countTokens(1), s.countTokens(2));
+    }
+
+    @Override
+    public BetterGameState copy() {
+        return new ArrayGameState(this);
+    }
+
+    //************ Getter methods *******************//
+
+    /**
+     * Returns the array representing the board of this game state
+     */
+    @Override
+    public int[][] getBoard() {
+        return board;
+    }
+
+    @Override
+    public int getToken(int col, int row) {
+        return board[col][row];
+    }
+
+    //************* Methods ****************//
+
+    @Override
+    protected boolean play(int sq, Undo undo) {
+        var placeCol = sq / size;
+        var placeRow = sq % size;
+        if (board[placeCol][placeRow] != 0) // The position is not empty
+            return false;
+
+        if (undo != null) {
+            if (undo.flipped == null) {
+                // Each of the 8 directions can turn at most size - 2 tokens.
+                undo.flipped = new int[8 * (size - 2)];
+            }
+            undo.flipCount = 0;
+            undo.blackFrontier = frontierCounts[0];
+            undo.whiteFrontier = frontierCounts[1];
+        }
+
+        var me = currentPlayer - 1;
+        var other = 1 - me;
+        boolean capturesFound = false;
+        var captures = 0;
+        // Capturing all possible opponents of the current player
+        for (int deltaX = -1; deltaX <= 1; deltaX++) {
+            for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                int captives = captureInDirection(placeCol, placeRow, deltaX, deltaY);
+                captures += captives;
+                if (captives > 0) {
+                    capturesFound = true;
+                    for (int i = 1; i <= captives; i++) {
+                        var col = placeCol + deltaX * i;
+                        var row = placeRow + deltaY * i;
+                        board[col][row] = currentPlayer;
+                        hash ^= zobrist[col * size + row] ^ zobrist[size * size + col * size + row];
+                        var flipped = col * size + row;
+                        regionCounts[other][regions[flipped]]--;
+                        regionCounts[me][regions[flipped]]++;
+                        if (emptyNeighbours[flipped] > 0) {
+                            frontierCounts[other]--;
+                            frontierCounts[me]++;
+                        }
+                        if (undo != null) {
+                            undo.flipped[undo.flipCount++] = col * size + row;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (capturesFound) {
+            // Place the token at the given place
+            board[placeCol][placeRow] = currentPlayer;
+            hash ^= zobrist[(currentPlayer - 1) * size * size + sq];
+            regionCounts[me][regions[sq]]++;
+            // The position is no longer empty, so its neighbours might no longer be on the frontier.
+            for (int deltaX = -1; deltaX <= 1; deltaX++) {
+                for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                    var c = placeCol + deltaX;
+                    var r = placeRow + deltaY;
+                    if ((deltaX != 0 || deltaY != 0) && 0 <= c && c < size && 0 <= r && r < size
+                            && --emptyNeighbours[c * size + r] == 0 && board[c][r] != 0) {
+                        frontierCounts[board[c][r] - 1]--;
+                    }
+                }
+            }
+            if (emptyNeighbours[sq] > 0) {
+                frontierCounts[me]++;
+            }
+            if (undo != null) {
+                undo.square = sq;
+            }
+            if (currentPlayer == 1) {
+                blackTokens += captures + 1;
+                whiteTokens -= captures;
+            } else {
+                whiteTokens += captures + 1;
+                blackTokens -= captures;
+            }
+            this.changePlayer();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    protected void unplay(Undo undo) {
+        // The turned tokens belonged to the opponent of the player who made the move.
+        var opponent = undo.player == 1 ? 2 : 1;
+        for (int i = 0; i < undo.flipCount; i++) {
+            var sq = undo.flipped[i];
+            board[sq / size][sq % size] = opponent;
+            regionCounts[undo.player - 1][regions[sq]]--;
+            regionCounts[opponent - 1][regions[sq]]++;
+        }
+
+        var col = undo.square / size;
+        var row = undo.square % size;
+        board[col][row] = 0;
+        regionCounts[undo.player - 1][regions[undo.square]]--;
+        for (int deltaX = -1; deltaX <= 1; deltaX++) {
+            for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                var c = col + deltaX;
+                var r = row + deltaY;
+                if ((deltaX != 0 || deltaY != 0) && 0 <= c && c < size && 0 <= r && r < size) {
+                    emptyNeighbours[c * size + r]++;
+                }
+            }
+        }
+        frontierCounts[0] = undo.blackFrontier;
+        frontierCounts[1] = undo.whiteFrontier;
+    }
+
+    @Override
+    public int regionCount(int player, int region) {
+        return regionCounts[player - 1][region];
+    }
+
+    @Override
+    public int frontier(int player) {
+        return frontierCounts[player - 1];
+    }
+
+    /**
+     * Returns whether the position is occupied by the opponent.
+     */
+    public boolean isOpponent(int x, int y) {
+        return !(x < 0 || x >= size || y < 0 || y >= size) && board[x][y] == (getPlayerInTurn() & 1) + 1;
+    }
+
+    /**
+     * Returns whether the position is likely to constitute a legal move for the current player. This never returns
+     * false for any legal move, but might return true for an illegal move.
+     */
+    public boolean likelyLegal(int x, int y) {
+        if (board[x][y] != 0) {
+            return false;
+        }
+
+        return isOpponent(x - 1, y - 1) ||
+                isOpponent(x - 1, y) ||
+                isOpponent(x - 1, y + 1) ||
+                isOpponent(x, y - 1) ||
+                isOpponent(x, y + 1) ||
+                isOpponent(x + 1, y - 1) ||
+                isOpponent(x + 1, y) ||
+                isOpponent(x + 1, y + 1);
+    }
+
+    /**
+     * Returns an iterator of all the positions on the board that are likely to constitutes a legal move for the current
+     * player. This is a superset of legalMoves().
+     */
+    public Iterator<Position> likelyPositions() {
+        return new Iterator<>() {
+            int i, j = -1;
+            boolean empty, advance = true;
+
+            @Override
+            public boolean hasNext() {
+                if (!advance) {
+                    return !empty;
+                }
+
+                do {
+                    if (j < size - 1) {
+                        j++;
+                    } else {
+                        j = 0;
+                        if (i < size - 1) {
+                            i++;
+                        } else {
+                            empty = true;
+                            break;
+                        }
+                    }
+                } while (!likelyLegal(i, j));
+
+                advance = false;
+                return !empty;
+            }
+
+            @Override
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("empty");
+                } else {
+                    advance = true;
+                    return new Position(i, j);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Position> legalMoves() {
+        return new Iterator<>() {
+            final Iterator<Position> positions = likelyPositions();
+            Position next;
+            boolean advance = true;
+
+            @Override
+            public boolean hasNext() {
+                if (!advance) {
+                    return next != null;
+                }
+
+                while (positions.hasNext()) {
+                    var p = positions.next();
+                    if (isLegalMove(p)) {
+                        advance = false;
+                        next = p;
+                        return true;
+                    }
+                }
+
+                advance = false;
+                next = null;
+                return false;
+            }
+
+            @Override
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("empty");
+                } else {
+                    advance = true;
+                    return next;
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isLegal(int sq) {
+        var col = sq / size;
+        var row = sq % size;
+        if (board[col][row] != 0) {
+            return false;
+        }
+
+        for (int deltax = -1; deltax <= 1; deltax++) {
+            for (int deltay = -1; deltay <= 1; deltay++) {
+                if (!(deltax == 0 && deltay == 0) && captureInDirection(col, row, deltax, deltay) > 0) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int generateMoves(int[] moves) {
+        var n = 0;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                if (likelyLegal(col, row) && isLegal(col * size + row)) {
+                    moves[n++] = col * size + row;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int mobility(int player) {
+        return countMoves(player, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return countMoves(1, 1) == 0 && countMoves(2, 1) == 0;
+    }
+
+    // Counts the legal moves of the given player, but stops counting at limit.
+    private int countMoves(int player, int limit) {
+        // The move checks are all relative to the player in turn, so it is switched for the duration of the count. The
+        // hash is not touched, as the player is switched back before anything can see it.
+        var inTurn = currentPlayer;
+        currentPlayer = player;
+        var count = 0;
+        for (int col = 0; col < size && count < limit; col++) {
+            for (int row = 0; row < size && count < limit; row++) {
+                if (likelyLegal(col, row) && isLegal(col * size + row)) {
+                    count++;
+                }
+            }
+        }
+        currentPlayer = inTurn;
+        return count;
+    }
+
+    /**
+     * Checks how many tokens of the opponent the player can capture in the direction given by deltaX and deltaY
+     * if the player puts a token at the given position.
+     *
+     * @param p      A position on the board
+     * @param deltaX The step to be taken in the x-direction. Should be -1 (left), 0 (none), or 1 (right).
+     * @param deltaY The step to be taken in the delta direction. Should be -1 (up), 0 (none), or 1 (down).
+     */
+    public int captureInDirection(Position p, int deltaX, int deltaY) {
+        return captureInDirection(p.col, p.row, deltaX, deltaY);
+    }
+
+    private int captureInDirection(int col, int row, int deltaX, int deltaY) {
+        int opponent = (currentPlayer == 1 ? 2 : 1);
+
+        int captured = 0;
+        int cc = col;
+        int rr = row;
+        while (0 <= cc + deltaX && cc + deltaX < size && 0 <= rr + deltaY && rr + deltaY < size
+                && board[cc + deltaX][rr + deltaY] == opponent) {
+            cc = cc + deltaX;
+            rr = rr + deltaY;
+            captured++;
+        }
+        if (0 <= cc + deltaX && cc + deltaX < size && 0 <= rr + deltaY && rr + deltaY < size
+                && board[cc + deltaX][rr + deltaY] == currentPlayer && captured > 0) {
+            return captured;
+        } else
+            return 0;
+    }
+
+}
@@ -0,0 +1,977 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+abstract class BaseAI implements IOthelloAI, Cloneable, AutoCloseable {
+    // The search is a negamax: scores are from the point of view of the player in turn at the node they belong to, so
+    // the score of a position for one player is minus its score for the other. No heuristic gets near INFINITY, and
+    // unlike Integer.MIN_VALUE it can be negated.
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    // The heuristic value of the position for the player in turn. The heuristics give values from the point of view of
+    // the player decideMove was called for, so they are negated when the opponent is in turn.
+    public int evaluate(BetterGameState s) {
+        var value = heuristic(s, rootPlayer);
+        return s.getPlayerInTurn() == rootPlayer ? value : -value;
+    }
+
+    public abstract int heuristic(BetterGameState s, int player);
+
+    public boolean isCutOff(int depth) {
+        return depth + reduced >= horizon;
+    }
+
+    // Time in milliseconds to search for each move. Can be set with -Dothello.time.
+    public long timeBudget() {
+        return Long.getLong("othello.time", 5000);
+    }
+
+    // The deepest iteration to search, regardless of the time left. Can be set with -Dothello.depth.
+    public int maxDepth() {
+        return Integer.getInteger("othello.depth", Integer.MAX_VALUE);
+    }
+
+    // The transposition table has 2^transpositionTableBits() entries of 16 bytes. Can be set with -Dothello.tt.bits.
+    public int transpositionTableBits() {
+        return Integer.getInteger("othello.tt.bits", 20);
+    }
+
+    // Can be set with -Dothello.tt.replacement=ALWAYS or DEPTH_PREFERRED.
+    public TranspositionTable.Replacement transpositionTableReplacement() {
+        return TranspositionTable.Replacement.valueOf(System.getProperty("othello.tt.replacement", "DEPTH_PREFERRED"));
+    }
+
+    // Number of threads to search with. Can be set with -Dothello.threads.
+    public int threads() {
+        return Integer.getInteger("othello.threads", 1);
+    }
+
+    enum Parallelism {
+        // Helper threads run their own searches and share results through the transposition table.
+        LAZY_SMP,
+        // Young Brothers Wait: nodes are split between threads once their first move has been searched. The result
+        // only depends on the depth searched, not on the number of threads or their timing.
+        YBWC
+    }
+
+    // How to use more than one thread. Can be set with -Dothello.parallelism=LAZY_SMP or YBWC.
+    public Parallelism parallelism() {
+        return Parallelism.valueOf(System.getProperty("othello.parallelism", "LAZY_SMP"));
+    }
+
+    // File to look up opening moves in before searching, or null for none. A missing file, or one that is not a valid
+    // book, is the same as none. Can be set with -Dothello.book, blank for none, see OpeningBook for how to build one.
+    public Path openingBook() {
+        var path = System.getProperty("othello.book", "othello.book");
+        return path.isBlank() ? null : Path.of(path);
+    }
+
+    // Whether to go on searching in the background while the opponent decides on their move. Can be set with
+    // -Dothello.ponder=true. It uses a core of its own, so it is not fair against an AI on the same core.
+    public boolean ponder() {
+        return Boolean.getBoolean("othello.ponder");
+    }
+
+    // With this many empty squares or fewer, the rest of the game is solved exactly instead of searched with the
+    // heuristic. Only 8x8 boards are solved. Positions with 20 empty squares are solved within the default time
+    // budget, most of them in a small part of it. Can be set with -Dothello.endgame, 0 turns the solver off.
+    public int endgameEmpties() {
+        return Integer.getInteger("othello.endgame", 20);
+    }
+
+    // Each iteration first searches the root with a window this far on each side of the score of the previous one, and
+    // only widens it if the score falls outside. Should be about as large as the scores of the heuristic usually change
+    // by from one iteration to the next. Can be set with -Dothello.aspiration, 0 searches with a full window.
+    public int aspirationWindow() {
+        return Integer.getInteger("othello.aspiration", 1000);
+    }
+
+    // Whether moves late in the move ordering are first searched one move less deep, see negamax. Can be set with
+    // -Dothello.lmr=true.
+    public boolean lateMoveReductions() {
+        return Boolean.getBoolean("othello.lmr");
+    }
+
+    // File with the Multi-ProbCut parameters for this AI's heuristic, or null to search full width. Can be set with
+    // -Dothello.probcut, see ProbCut for how to fit them.
+    public Path probCut() {
+        var path = System.getProperty("othello.probcut");
+        return path == null ? null : Path.of(path);
+    }
+
+    // How many standard deviations of the error of the shallow search Multi-ProbCut allows for. Higher is more
+    // accurate and less selective. Can be set with -Dothello.probcut.threshold.
+    public double probCutThreshold() {
+        return Double.parseDouble(System.getProperty("othello.probcut.threshold", "1.5"));
+    }
+
+    // Nodes closer to the horizon than this are not split by YBWC, as searching them takes less time than handing
+    // them to another thread.
+    private static final int SPLIT_DEPTH = 4;
+    // Late move reductions only apply to moves after this many in the ordering, and at least this far from the
+    // horizon, where a reduced search still sees something.
+    private static final int LMR_MOVES = 3;
+    private static final int LMR_DEPTH = 3;
+    // Pondering stops after this many times timeBudget().
+    private static final int PONDER_BUDGETS = 4;
+
+    // Used to shuffle the moves at the root. Seed it with -Dothello.seed to make the choice between equally good moves
+    // reproducible.
+    private final Random random = Long.getLong("othello.seed") == null
+            ? new Random()
+            : new Random(Long.getLong("othello.seed"));
+
+    // Kept across calls to decideMove, so positions searched for earlier moves are not searched again. When searching
+    // with more than one thread, all of them share this table.
+    private TranspositionTable table;
+    // The player decideMove was last called for. The heuristics score positions from the point of view of this player,
+    // so the scores in the table are only valid as long as it does not change.
+    private int rootPlayer;
+    // Runs the helper searches for LAZY_SMP. Created on first use.
+    private ExecutorService helpers;
+    // Runs the split searches for YBWC. Created on first use.
+    private ForkJoinPool splits;
+    // Created the first time a position has few enough empty squares, see endgameEmpties().
+    private EndgameSolver solver;
+    // Runs the search while the opponent decides. Created on first use.
+    private ExecutorService ponderer;
+    private Future<?> pondering;
+    private Stop ponderStop;
+    // Statistics of the last call to decideMove. Search threads add their counters to it when they are done.
+    private SearchStats stats;
+    // Opened on the first call to decideMove, see openingBook().
+    private OpeningBook book;
+    private boolean bookOpened;
+    private int score;
+    // Read on the first call to decideMove, see probCut().
+    private ProbCut probCut;
+    private boolean probCutRead;
+
+    // The fields below belong to a single search thread. Helper threads search with clones of this AI, so they each
+    // get their own copies, while the table and the stop flag are shared.
+
+    // The depth of the current iteration.
+    private int horizon;
+    // How many moves less deep than the horizon the current node is searched, by late move reductions and the shallow
+    // searches of Multi-ProbCut.
+    private int reduced;
+    // lateMoveReductions() and probCutThreshold() of the current search.
+    private boolean reductions;
+    private double threshold;
+    // negamax gives up on the current iteration when System.nanoTime() passes this, or when stop is set.
+    private long deadline;
+    private Stop stop;
+    // What this search thread has counted since it started. Added to stats when the thread is done.
+    private SearchStats counters;
+    // Whether nodes are split between threads (YBWC). The transposition table only gives results for exactly the
+    // remaining depth then, since results from deeper searches would make the outcome depend on thread timing.
+    private boolean splitting;
+    // The result of the deepest iteration that finished: the best move, or -1 if there is none, its score and the
+    // principal variation, the moves both players are expected to make from the root.
+    private int completedDepth;
+    private int bestMove = -1;
+    private int bestScore;
+    private int[] bestVariation = new int[0];
+    // The moves of the node being searched at each depth, and their scores for move ordering. Each search thread has
+    // its own, allocated as the search gets deeper. At the root, iterate() generates the moves.
+    private int[][] moveLists;
+    private int[][] scoreLists;
+    private int rootMoves;
+    // Triangular principal variation table: pv[depth] holds pvLength[depth] moves, the best line found from the node
+    // at that depth. A node copies the line of its best child after its own move. PASS stands for a pass.
+    private int[][] pv;
+    private int[] pvLength;
+    static final int PASS = -1;
+
+    // Move ordering data. It is shared by all search threads without locking, which at worst makes a move get tried a
+    // bit earlier or later than it should.
+
+    // Static value of each square: corners are good, the squares next to them are bad.
+    private int[] squareWeights;
+    // The two most recent moves at each depth that caused a cut-off. Sibling positions tend to be refuted by the same
+    // move, so these are tried early.
+    private int[][] killers;
+    // For each player and square, how much putting a token there has caused cut-offs, weighted by the depth searched.
+    private int[][] history;
+
+    // Move ordering scores. Moves are tried from the highest score to the lowest. Anything else scores less than
+    // KILLER_2, see order().
+    private static final int HASH_MOVE = Integer.MAX_VALUE;
+    private static final int KILLER_1 = Integer.MAX_VALUE - 1;
+    private static final int KILLER_2 = Integer.MAX_VALUE - 2;
+    private static final int MAX_HISTORY = 1 << 20;
+
+    // Thrown out of negamax when the time is up. There is only one instance, and it has no stack trace, as it is only
+    // used to unwind the search.
+    private static final class TimeUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final TimeUp TIME_UP = new TimeUp();
+
+    // Tells a search to give up. A search also gives up when any of the flags it was derived from is set, so stopping
+    // a split node also stops everything below it.
+    private static final class Stop {
+        private final Stop parent;
+        private volatile boolean stopped;
+
+        Stop(Stop parent) {
+            this.parent = parent;
+        }
+
+        void set() {
+            stopped = true;
+        }
+
+        boolean get() {
+            return stopped || parent != null && parent.get();
+        }
+    }
+
+    public Position decideMove(GameState s) {
+        stopPondering();
+
+        // The event costs next to nothing when no flight recording is running.
+        var event = new SearchEvent();
+        event.begin();
+        var start = System.nanoTime();
+        stats = new SearchStats();
+        counters = new SearchStats();
+
+        var move = search(s);
+
+        stats.time = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(getClass().getName(), stats);
+            event.commit();
+        }
+
+        if (ponder()) {
+            startPondering(s, move);
+        }
+        return move;
+    }
+
+    // Searches in the background until the opponent has moved and we are asked for our next move. If our principal
+    // variation has a reply for the opponent, we search the position after that reply, just as if it was our turn
+    // there. Otherwise we search the position after our move, which covers all of the opponent's
+    // replies. The values are from our point of view as usual, so everything the pondering puts in the transposition
+    // table, killers and history is there for the next search to use, which then gets through the iterations the
+    // pondering already did almost at once. If the opponent plays something else, the work on the other branches is
+    // simply not used.
+    private void startPondering(GameState s, Position move) {
+        var state = BetterGameState.of(s);
+        var size = state.getSize();
+        state.insertToken(move.col * size + move.row);
+        var empty = size * size - state.countTokens(1) - state.countTokens(2);
+        // If the opponent cannot move, the game is over or we move again, and there is nothing to ponder on. Neither
+        // is there if the next position will be solved, as the solver does not use the transposition table, or if
+        // nothing was searched yet because the moves so far came from the opening book.
+        if (table == null || state.mobility(state.getPlayerInTurn()) == 0
+                || state instanceof BitBoardGameState && empty - 1 <= endgameEmpties()) {
+            return;
+        }
+
+        if (ponderer == null) {
+            ponderer = Executors.newSingleThreadExecutor(r -> {
+                var thread = new Thread(r, "BaseAI ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // Pondering gives up after a few times our own budget, so it does not keep a core busy when no next move comes,
+        // e.g. after our last move of the game.
+        var start = System.nanoTime();
+        var budget = nanos(PONDER_BUDGETS * timeBudget());
+        var searcher = (BaseAI) clone();
+        ponderStop = new Stop(null);
+        searcher.stop = ponderStop;
+        searcher.deadline = deadline(start, budget);
+        searcher.splitting = false;
+        searcher.bestMove = -1;
+
+        var reply = stats.pv.size() > 1 ? stats.pv.get(1) : null;
+        if (reply != null && state.insertToken(reply.col * size + reply.row)
+                && state.mobility(state.getPlayerInTurn()) > 0
+                && state.getPlayerInTurn() == rootPlayer) {
+            var depthLimit = Math.min(maxDepth(), empty - 1);
+            pondering = ponderer.submit(() -> searcher.iterate(state, start, budget, depthLimit, 0, false));
+        } else {
+            var all = BetterGameState.of(s);
+            all.insertToken(move.col * size + move.row);
+            var depthLimit = Math.min(maxDepth(), empty);
+            pondering = ponderer.submit(() -> searcher.ponder(all, depthLimit));
+        }
+    }
+
+    // Iterative deepening from the position after our move. The opponent is in turn, so it is searched as a Min node
+    // one move below the root.
+    private void ponder(BetterGameState state, int depthLimit) {
+        for (horizon = 2; horizon <= depthLimit + 1; horizon++) {
+            reduced = 0;
+            try {
+                negamax(state, -INFINITY, INFINITY, 1);
+            } catch (TimeUp e) {
+                return;
+            }
+        }
+    }
+
+    private void stopPondering() {
+        if (pondering == null) {
+            return;
+        }
+        ponderStop.set();
+        // The pondering notices within 1024 nodes. It has to be done before the next search starts, as they share the
+        // killers and history.
+        try {
+            pondering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        pondering = null;
+    }
+
+    /**
+     * Returns the statistics of the last call to decideMove, or null if it has not been called.
+     */
+    public SearchStats stats() {
+        return stats;
+    }
+
+    /**
+     * Stops the threads this AI searches with, so they do not outlive the game. It must not be called during
+     * decideMove. The AI can still be used afterwards, and then starts new threads when it needs them.
+     */
+    @Override
+    public void close() {
+        stopPondering();
+        if (ponderer != null) {
+            ponderer.shutdown();
+            ponderer = null;
+        }
+        if (helpers != null) {
+            helpers.shutdown();
+            helpers = null;
+        }
+        if (splits != null) {
+            splits.shutdown();
+            splits = null;
+        }
+    }
+
+    private Position search(GameState s) {
+        var state = BetterGameState.of(s);
+
+        if (!bookOpened) {
+            bookOpened = true;
+            var path = openingBook();
+            if (path != null && Files.exists(path)) {
+                // A book that cannot be used is no reason to lose the game: without it, every move is searched.
+                try {
+                    book = OpeningBook.open(path);
+                } catch (IOException e) {
+                    System.err.println("Not using the opening book " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!probCutRead) {
+            probCutRead = true;
+            var path = probCut();
+            if (path != null) {
+                try {
+                    probCut = ProbCut.read(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        if (book != null && state instanceof BitBoardGameState bits) {
+            var canonical = bits.canonical();
+            var i = book.find(canonical.key());
+            if (i >= 0) {
+                var move = canonical.fromCanonical(book.move(i));
+                if (bits.isLegal(move)) {
+                    score = book.score(i);
+                    stats.source = SearchStats.Source.BOOK;
+                    return new Position(BitBoard.col(move), BitBoard.row(move));
+                }
+            }
+        }
+
+        if (table == null) {
+            table = new TranspositionTable(transpositionTableBits(), transpositionTableReplacement());
+        } else if (rootPlayer != state.getPlayerInTurn()) {
+            table.clear();
+        }
+        table.newSearch();
+        rootPlayer = state.getPlayerInTurn();
+
+        var squares = state.getSize() * state.getSize();
+        if (squareWeights == null || squareWeights.length != squares) {
+            squareWeights = squareWeights(state.getSize());
+            killers = new int[squares + 1][2];
+            history = new int[2][squares];
+        }
+        for (var killer : killers) {
+            Arrays.fill(killer, -1);
+        }
+        // Old history still says something about which moves are good, but should not drown out what this search
+        // finds.
+        for (var h : history) {
+            for (int i = 0; i < h.length; i++) {
+                h[i] /= 2;
+            }
+        }
+
+        var begin = System.nanoTime();
+        var empty = state.getSize() * state.getSize() - state.countTokens(1) - state.countTokens(2);
+        if (empty <= endgameEmpties() && state instanceof BitBoardGameState bits) {
+            if (solver == null) {
+                solver = new EndgameSolver(transpositionTableBits());
+            }
+            // If the solver runs out of time before it knows whether any move wins, the last quarter of the budget goes to
+            // a normal search. Finding the exact score can take all of the budget, as the solver falls back on a move
+            // that is as good in terms of win, loss or draw.
+            var move = solver.solve(bits.player(), bits.opponent(), deadline(begin, nanos(timeBudget()) / 4 * 3),
+                    deadline(begin, nanos(timeBudget())), random);
+            // Counted as part of the first iteration if the normal search takes over.
+            counters.nodes += solver.nodes();
+            if (move >= 0) {
+                stats.add(counters);
+                stats.source = SearchStats.Source.ENDGAME;
+                stats.depth = empty;
+                return new Position(BitBoard.col(move), BitBoard.row(move));
+            }
+        }
+
+        var start = System.nanoTime();
+        var budget = nanos(timeBudget()) - (start - begin);
+
+        var depthLimit = Math.min(maxDepth(), empty);
+        reductions = lateMoveReductions();
+        threshold = probCutThreshold();
+        stop = new Stop(null);
+        splitting = parallelism() == Parallelism.YBWC;
+        if (splitting && splits == null) {
+            splits = new ForkJoinPool(threads());
+        }
+
+        // Lazy SMP: the helpers run the same iterative deepening as we do, on their own copy of the state, and only
+        // communicate through the transposition table. They shuffle the root moves differently, and every other helper
+        // is one iteration ahead, so they fill the table with results we need soon but have not searched yet.
+        var threads = splitting ? 1 : threads();
+        var searches = new ArrayList<BaseAI>();
+        var futures = new ArrayList<Future<?>>();
+        if (threads > 1 && helpers == null) {
+            helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+                var thread = new Thread(r, "BaseAI helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (int i = 1; i < threads; i++) {
+            var helper = (BaseAI) clone();
+            var copy = state.copy();
+            var offset = i % 2;
+            searches.add(helper);
+            futures.add(helpers.submit(() -> {
+                try {
+                    helper.iterate(copy, start, budget, depthLimit, offset, false);
+                } finally {
+                    stats.add(helper.counters);
+                }
+            }));
+        }
+
+        iterate(state, start, budget, depthLimit, 0, true);
+
+        stop.set();
+        var result = this;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if (searches.get(i).completedDepth > result.completedDepth) {
+                result = searches.get(i);
+            }
+        }
+        score = result.bestScore;
+        stats.add(counters);
+        stats.depth = result.completedDepth;
+        var size = state.getSize();
+        for (var move : result.bestVariation) {
+            stats.pv.add(move == PASS ? null : new Position(move / size, move % size));
+        }
+        return result.bestMove < 0 ? null : new Position(result.bestMove / size, result.bestMove % size);
+    }
+
+    // The score of the move decideMove last returned, from the point of view of the player it was chosen for.
+    int score() {
+        return score;
+    }
+
+    // Iterative deepening: search 1, 2, 3... moves ahead until the time is up, and remember the move from the deepest
+    // search that finished. The transposition table makes the earlier iterations cheap to redo, and their best moves
+    // are tried first in the next iteration. The main thread always lets its first iteration finish, so we have a move
+    // no matter how little time we get.
+    private void iterate(BetterGameState state, long start, long budget, int depthLimit, int offset, boolean main) {
+        deadline = main ? Long.MAX_VALUE : deadline(start, budget);
+        completedDepth = 0;
+        bestMove = -1;
+        allocate(state.getSize(), 0);
+
+        for (horizon = 1 + offset; horizon <= depthLimit; horizon++) {
+            var iterationStart = System.nanoTime();
+
+            // We shuffle the moves at the root to facilitate some randomness in our moves. The move we end up choosing
+            // should still be the optimal, but in cases where two or more moves are equally good, we avoid always
+            // choosing the first. Ordering keeps moves with equal scores in the order they are in, so it does not undo
+            // the shuffle. This is done once per iteration, so a search again with a wider aspiration window tries the
+            // moves in the same order.
+            var moves = moveLists[0];
+            rootMoves = state.generateMoves(moves);
+            for (int i = rootMoves - 1; i > 0; i--) {
+                var j = random.nextInt(i + 1);
+                var t = moves[i];
+                moves[i] = moves[j];
+                moves[j] = t;
+            }
+
+            reduced = 0;
+            try {
+                int value;
+                if (splitting) {
+                    // Splitting only works from inside the pool, so the root is searched there as well.
+                    value = splits.invoke(ForkJoinTask.adapt(() -> aspirationSearch(state)));
+                } else {
+                    value = aspirationSearch(state);
+                }
+                bestMove = pvLength[0] > 0 ? pv[0][0] : -1;
+                bestScore = value;
+                bestVariation = Arrays.copyOf(pv[0], pvLength[0]);
+                completedDepth = horizon;
+                if (main) {
+                    stats.iteration(horizon, value, counters.nodes, System.nanoTime() - iterationStart);
+                }
+            } catch (TimeUp e) {
+                break;
+            }
+
+            // The next iteration takes several times longer than this one, so if more than half the time is used
+            // there's no point in starting it.
+            var elapsed = System.nanoTime() - start;
+            if (main && elapsed > budget / 2) {
+                break;
+            }
+            deadline = deadline(start, budget);
+        }
+    }
+
+    // Converts a time budget from milliseconds to nanoseconds, and gives the time a budget in nanoseconds runs out.
+    // Both saturate at Long.MAX_VALUE instead of overflowing, so a budget of Long.MAX_VALUE / 1_000_000 ms works as no
+    // time limit.
+    static long nanos(long millis) {
+        return millis > Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : millis * 1_000_000;
+    }
+
+    static long deadline(long start, long budget) {
+        var deadline = start + budget;
+        return budget > 0 && deadline < start ? Long.MAX_VALUE : deadline;
+    }
+
+    // Searches the root with a window around the score of the previous iteration. A narrow window gives more cut-offs,
+    // but when the score falls outside it, all we learn is that it is below or above the window. The window is then
+    // made four times as wide on that side, until the score falls inside.
+    private int aspirationSearch(BetterGameState state) {
+        var window = aspirationWindow();
+        if (completedDepth == 0 || window <= 0) {
+            return negamax(state, -INFINITY, INFINITY, 0);
+        }
+        long below = window;
+        long above = window;
+        while (true) {
+            var alpha = (int) Math.max(-INFINITY, bestScore - below);
+            var beta = (int) Math.min(INFINITY, bestScore + above);
+            var value = negamax(state, alpha, beta, 0);
+            if (value <= alpha && alpha > -INFINITY) {
+                below *= 4;
+            } else if (value >= beta && beta < INFINITY) {
+                above *= 4;
+            } else {
+                return value;
+            }
+            counters.researches++;
+        }
+    }
+
+    @Override
+    protected Object clone() {
+        try {
+            var clone = (BaseAI) super.clone();
+            clone.moveLists = null;
+            clone.scoreLists = null;
+            clone.pv = null;
+            clone.pvLength = null;
+            clone.counters = new SearchStats();
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Makes sure the per thread tables have room for a node at the given depth.
+    private void allocate(int size, int depth) {
+        if (moveLists == null) {
+            moveLists = new int[size * size + 1][];
+            scoreLists = new int[size * size + 1][];
+            pv = new int[size * size + 1][];
+            pvLength = new int[size * size + 1];
+        }
+        if (moveLists[depth] == null) {
+            moveLists[depth] = new int[size * size];
+            scoreLists[depth] = new int[size * size];
+            pv[depth] = new int[size * size + 1 - depth];
+        }
+    }
+
+    // Core of the algorithm: alpha-beta in negamax form, so Max and Min nodes are the same code, with the scores and
+    // the window negated from one depth to the next. Returns the score of the position for the player in turn if it is
+    // inside the window, otherwise a bound on it in the direction it fell outside.
+    int negamax(BetterGameState s, int alpha, int beta, int depth) {
+        if ((++counters.nodes & 1023) == 0 && (System.nanoTime() > deadline || stop.get())) {
+            throw TIME_UP;
+        }
+
+        var size = s.getSize();
+        allocate(size, depth);
+        pvLength[depth] = 0;
+        if (isCutOff(depth)) {
+            counters.leaves++;
+            return evaluate(s);
+        }
+
+        // If this position has already been searched deep enough, we might be able to reuse the result. This is not done
+        // at depth 0, where we always need a move, and want the random choice between equally good moves below. If it
+        // has not been searched deep enough, its best move is still a good guess.
+        var key = s.hash();
+        var remaining = horizon - depth - reduced;
+        var entry = table.probe(key);
+        counters.probes++;
+        if (depth > 0 && entry != 0) {
+            var draft = TranspositionTable.depth(entry);
+            if (splitting ? draft == remaining : draft >= remaining) {
+                var score = TranspositionTable.score(entry);
+                var bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && score >= beta
+                        || bound == TranspositionTable.UPPER && score <= alpha) {
+                    counters.hits++;
+                    return score;
+                }
+            }
+        }
+
+        // Multi-ProbCut, in null window nodes only, so the principal variation is searched full width.
+        if (probCut != null && depth > 0 && beta == alpha + 1) {
+            var cut = probCut(s, alpha, beta, depth, remaining);
+            if (cut != 0) {
+                return cut > 0 ? beta : alpha;
+            }
+            // The shallow searches may have left a better move to try first in the table.
+            entry = table.probe(key);
+            pvLength[depth] = 0;
+        }
+
+        var moves = moveLists[depth];
+        var scores = scoreLists[depth];
+        var n = depth == 0 ? rootMoves : s.generateMoves(moves);
+
+        if (n == 0) {
+            // If neither player can move, the game is over.
+            if (s.mobility(s.getPlayerInTurn() == 1 ? 2 : 1) == 0) {
+                counters.leaves++;
+                return evaluate(s);
+            }
+            // If we have no legal moves just let the other player move again.
+            s.changePlayer();
+            var value = -negamax(s, -beta, -alpha, depth + 1);
+            s.changePlayer();
+            updatePv(depth, PASS);
+            return value;
+        }
+
+        order(s, moves, scores, n, depth, TranspositionTable.move(entry));
+
+        var alphaOrig = alpha;
+        var best = -INFINITY;
+        var move = -1;
+        for (int i = 0; i < n; i++) {
+            // Young Brothers Wait: once the first move has been searched and has narrowed the window, the remaining
+            // moves are searched in parallel.
+            if (i > 0 && splitting && remaining >= SPLIT_DEPTH) {
+                var result = searchSiblings(s, moves, scores, i, n, alpha, beta, depth, best, move);
+                best = (int) (result >> 32);
+                move = (int) result;
+                break;
+            }
+
+            pick(moves, scores, i, n);
+            var action = moves[i];
+
+            // Result of performing the action. The search runs on a single state, so the action is taken back again
+            // as soon as it has been evaluated.
+            s.makeMove(action);
+
+            // Principal variation search: the first move is most likely the best, so the others are searched with a
+            // null window, which only tells whether they are better. That takes fewer nodes than finding out how much
+            // worse they are. Only a move that turns out to be better is searched again with the full window.
+            int value;
+            if (i == 0) {
+                value = -negamax(s, -beta, -alpha, depth + 1);
+            } else {
+                // Late move reductions: with good move ordering, a move this far down the list is unlikely to be
+                // better, so it is first searched one move less deep. Only if that says it is better after all, it is
+                // searched to the full depth. The hash move and the killers are never reduced.
+                value = alpha + 1;
+                if (reductions && depth > 0 && i >= LMR_MOVES && remaining >= LMR_DEPTH
+                        && scores[i] < KILLER_2) {
+                    reduced++;
+                    value = -negamax(s, -alpha - 1, -alpha, depth + 1);
+                    reduced--;
+                }
+                if (value > alpha) {
+                    value = -negamax(s, -alpha - 1, -alpha, depth + 1);
+                    if (value > alpha && value < beta) {
+                        counters.researches++;
+                        value = -negamax(s, -beta, -alpha, depth + 1);
+                    }
+                }
+            }
+            s.undoMove();
+
+            if (value > best) {
+                best = value;
+                move = action;
+                if (value > alpha) {
+                    alpha = value;
+                    updatePv(depth, action);
+                }
+            }
+
+            if (alpha >= beta) {
+                counters.cutOff(i);
+                cutOff(s, action, depth);
+                break;
+            }
+        }
+
+        var bound = best <= alphaOrig ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        table.store(key, remaining, bound, best, move);
+        return best;
+    }
+
+    // Makes the principal variation at the given depth the move followed by the one of the depth below.
+    private void updatePv(int depth, int move) {
+        var line = pv[depth];
+        line[0] = move;
+        var length = pvLength[depth + 1];
+        System.arraycopy(pv[depth + 1], 0, line, 1, length);
+        pvLength[depth] = length + 1;
+    }
+
+    // Multi-ProbCut: the score of a shallow search predicts the score of the full search, deep = a * shallow + b, with
+    // an error of standard deviation sigma. If the shallow search says the deep score is above beta, or below alpha,
+    // by more than the threshold times sigma, we trust it and skip the full search. Each shallow depth fitted for the
+    // remaining depth is tried in turn, from the cheapest. Returns 1 for a cut-off at beta, -1 at alpha and 0 if the
+    // node has to be searched.
+    private int probCut(BetterGameState s, int alpha, int beta, int depth, int remaining) {
+        for (var p : probCut.parameters(remaining)) {
+            var margin = threshold * p.sigma();
+            // The shallow scores that predict the deep score is at least beta or at most alpha.
+            var high = Math.ceil((beta + margin - p.b()) / p.a());
+            var low = Math.floor((alpha - margin - p.b()) / p.a());
+
+            reduced += remaining - p.shallow();
+            var cut = 0;
+            if (high > -INFINITY && high < INFINITY && negamax(s, (int) high - 1, (int) high, depth) >= high) {
+                cut = 1;
+            } else if (low > -INFINITY && low < INFINITY && negamax(s, (int) low, (int) low + 1, depth) <= low) {
+                cut = -1;
+            }
+            reduced -= remaining - p.shallow();
+            if (cut != 0) {
+                counters.probCuts++;
+                return cut;
+            }
+        }
+        return 0;
+    }
+
+    // Scores the moves for move ordering. Below the root the best move stored in the transposition table goes first,
+    // then the killer moves, then the rest by history and finally by square weight. At the root the best move of the
+    // previous iteration goes first and the rest are ordered by square weight only, so the order, and with it the choice
+    // between equally good moves, does not depend on what other threads put in the history.
+    private void order(BetterGameState s, int[] moves, int[] scores, int n, int depth, int hashMove) {
+        var size = s.getSize();
+        var previous = bestMove;
+        var player = s.getPlayerInTurn() - 1;
+        for (int i = 0; i < n; i++) {
+            var sq = moves[i];
+            if (depth == 0) {
+                scores[i] = sq == previous ? HASH_MOVE : squareWeights[sq];
+            } else if (sq == hashMove) {
+                scores[i] = HASH_MOVE;
+            } else if (sq == killers[depth][0]) {
+                scores[i] = KILLER_1;
+            } else if (sq == killers[depth][1]) {
+                scores[i] = KILLER_2;
+            } else {
+                scores[i] = Math.min(history[player][sq], MAX_HISTORY) * 256 + squareWeights[sq];
+            }
+        }
+    }
+
+    // Moves the highest scoring of the moves from i on to i. Of moves with equal scores, the first one is picked. Doing
+    // this one move at a time means that nothing is spent on sorting the moves after a cut-off.
+    private static void pick(int[] moves, int[] scores, int i, int n) {
+        var best = i;
+        for (int j = i + 1; j < n; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            // Shift rather than swap, to keep the order of the moves in between.
+            var move = moves[best];
+            var score = scores[best];
+            System.arraycopy(moves, i, moves, i + 1, best - i);
+            System.arraycopy(scores, i, scores, i + 1, best - i);
+            moves[i] = move;
+            scores[i] = score;
+        }
+    }
+
+    // Remembers a move that caused a cut-off as a killer move at its depth and in the history.
+    private void cutOff(BetterGameState s, int sq, int depth) {
+        var killer = killers[depth];
+        if (killer[0] != sq) {
+            killer[1] = killer[0];
+            killer[0] = sq;
+        }
+        var remaining = horizon - depth - reduced;
+        history[s.getPlayerInTurn() - 1][sq] += remaining * remaining;
+    }
+
+    // Weight of each region of the board, see BetterGameState.regions(). Corners are worth the most and the squares
+    // next to them the least, since they give the corner away. Edges are good, and the squares just inside the edges
+    // are slightly bad for the same reason.
+    private static final int[] REGION_WEIGHTS = {100, -50, -20, 10, -5, 0};
+
+    // Weights of the squares on a board of the given size, indexed by col * size + row.
+    static int[] squareWeights(int size) {
+        var regions = BetterGameState.regions(size);
+        var weights = new int[regions.length];
+        for (int sq = 0; sq < regions.length; sq++) {
+            weights[sq] = REGION_WEIGHTS[regions[sq]];
+        }
+        return weights;
+    }
+
+    // Searches the remaining actions of a node in parallel, all with the window left by the ones searched before. The
+    // results are combined in the order of the actions, so the outcome is the same as searching them one by one with
+    // that window, however the threads are scheduled. When one of them causes a cut-off, the rest are stopped. Returns
+    // the best score in the high half and its move in the low half.
+    private long searchSiblings(BetterGameState s, int[] moves, int[] scores, int from, int n, int alpha, int beta,
+                                int depth, int best, int move) {
+        var siblings = new ArrayList<Sibling>();
+        var cutOff = new Stop(stop);
+        for (int i = from; i < n; i++) {
+            pick(moves, scores, i, n);
+            var action = moves[i];
+            var child = s.copy();
+            child.makeMove(action);
+            var sibling = new Sibling(child, action, alpha, beta, depth + 1, cutOff);
+            sibling.fork();
+            siblings.add(sibling);
+        }
+
+        for (int i = 0; i < siblings.size(); i++) {
+            var sibling = siblings.get(i);
+            var value = sibling.join();
+            if (value > best) {
+                best = value;
+                move = sibling.action;
+                if (value > alpha) {
+                    alpha = value;
+                    pv[depth][0] = move;
+                    System.arraycopy(sibling.pv, 0, pv[depth], 1, sibling.pv.length);
+                    pvLength[depth] = sibling.pv.length + 1;
+                }
+            }
+
+            if (alpha >= beta) {
+                cutOff.set();
+                counters.cutOff(from + i);
+                cutOff(s, sibling.action, depth);
+                break;
+            }
+        }
+
+        return (long) best << 32 | move & 0xFFFFFFFFL;
+    }
+
+    // A move searched by another thread. It searches with a clone of the AI, so it has its own node counter, stop flag
+    // and principal variation, and can split its own nodes further. The clone is made when the sibling is forked, as by
+    // the time it runs, the parent may have gone on to other nodes and changed its horizon and reductions. Like in
+    // negamax, it is searched with a null window first.
+    private final class Sibling extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        final BetterGameState state;
+        final int action;
+        final int alpha, beta, depth;
+        final BaseAI searcher;
+        int[] pv;
+
+        Sibling(BetterGameState state, int action, int alpha, int beta, int depth, Stop stop) {
+            this.state = state;
+            this.action = action;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.depth = depth;
+            searcher = (BaseAI) BaseAI.this.clone();
+            searcher.stop = stop;
+        }
+
+        @Override
+        protected Integer compute() {
+            try {
+                var value = -searcher.negamax(state, -alpha - 1, -alpha, depth);
+                if (value > alpha && value < beta) {
+                    searcher.counters.researches++;
+                    value = -searcher.negamax(state, -beta, -alpha, depth);
+                }
+                pv = Arrays.copyOf(searcher.pv[depth], searcher.pvLength[depth]);
+                return value;
+            } finally {
+                stats.add(searcher.counters);
+            }
+        }
+    }
+}
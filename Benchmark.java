@@ -0,0 +1,221 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Micro benchmarks for the parts of the engine that the search spends its time in: move generation, making moves, the
+ * heuristic terms and fixed depth searches. Each benchmark runs over a fixed set of positions from seeded random games
+ * on boards of size 6, 8 and 10, so results can be compared between versions of the code.
+ * <p>
+ * Every benchmark is warmed up before it is measured in several iterations, and reports the time per operation with
+ * its standard deviation over the iterations, and the number of bytes allocated per operation by the benchmark
+ * thread.
+ * <pre>
+ * java Benchmark [name filter]
+ * </pre>
+ * runs the benchmarks whose name contains the filter. Can also be configured with -Dbenchmark.time (milliseconds per
+ * iteration, default 1000) and -Dbenchmark.iterations (default 5).
+ */
+public class Benchmark {
+    private static final int[] SIZES = {6, 8, 10};
+    private static final int POSITIONS = 64;
+
+    // The results of the operations are added to this, so the JIT cannot remove them as dead code.
+    private static long sink;
+
+    // An operation on the i'th position of the set.
+    private interface Operation {
+        long run(int i);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        var filter = args.length > 0 ? args[0] : "";
+        var time = Long.getLong("benchmark.time", 1000) * 1_000_000;
+        var iterations = Integer.getInteger("benchmark.iterations", 5);
+
+        System.out.printf("%-40s %4s %12s %10s %12s%n", "Benchmark", "Size", "ns/op", "+-", "bytes/op");
+        for (var size : SIZES) {
+            var positions = positions(size);
+            for (var entry : benchmarks(size, positions).entrySet()) {
+                if (!entry.getKey().contains(filter)) {
+                    continue;
+                }
+                run(entry.getKey(), size, entry.getValue(), time, iterations);
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static Map<String, Operation> benchmarks(int size, GameState[] positions) {
+        var states = new BetterGameState[positions.length];
+        var moves = new Position[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            states[i] = BetterGameState.of(positions[i]);
+            moves[i] = positions[i].legalMoves().get(0);
+        }
+
+        var benchmarks = new LinkedHashMap<String, Operation>();
+        // The legal moves of a GameState are cached, so each operation gets a new state to find them for.
+        benchmarks.put("GameState.legalMoves", i -> {
+            var s = positions[i];
+            return new GameState(s.getBoard(), s.getPlayerInTurn()).legalMoves().size();
+        });
+        benchmarks.put("BetterGameState.legalMoves", i -> {
+            long n = 0;
+            for (var it = states[i].legalMoves(); it.hasNext(); it.next()) {
+                n++;
+            }
+            return n;
+        });
+        benchmarks.put("BetterGameState.isLegalMove", i -> {
+            long n = 0;
+            for (int col = 0; col < size; col++) {
+                for (int row = 0; row < size; row++) {
+                    if (states[i].isLegalMove(new Position(col, row))) {
+                        n++;
+                    }
+                }
+            }
+            return n;
+        });
+        benchmarks.put("BetterGameState.generateMoves", new Operation() {
+            final int[] buffer = new int[size * size];
+
+            @Override
+            public long run(int i) {
+                return states[i].generateMoves(buffer);
+            }
+        });
+        benchmarks.put("BetterGameState.copy+insertToken", i -> {
+            var s = states[i].copy();
+            s.insertToken(moves[i]);
+            return s.hash();
+        });
+        benchmarks.put("BetterGameState.makeMove+undoMove", i -> {
+            var s = states[i];
+            s.makeMove(moves[i]);
+            var hash = s.hash();
+            s.undoMove();
+            return hash;
+        });
+        benchmarks.put("Heuristic.moves", i -> Heuristic.moves(states[i]));
+        benchmarks.put("Heuristic.tokens", i -> Heuristic.tokens(states[i], 1));
+        benchmarks.put("Heuristic.corners", i -> Heuristic.corners(states[i], 1));
+        if (size == BitBoardGameState.SIZE) {
+            benchmarks.put("Heuristic.patterns", i -> Heuristic.patterns((BitBoardGameState) states[i], 1));
+            // Both kinds of kernels, whichever of them the engine was started with.
+            var kernels = new LinkedHashMap<String, Kernels>();
+            kernels.put("scalar", new Kernels());
+            if (Kernels.vector() != null) {
+                kernels.put("vector", Kernels.vector());
+            }
+            for (var entry : kernels.entrySet()) {
+                var k = entry.getValue();
+                benchmarks.put("Kernels.moves (" + entry.getKey() + ")", i -> {
+                    var s = (BitBoardGameState) states[i];
+                    return k.moves(s.player(), s.opponent());
+                });
+                benchmarks.put("Kernels.sum (" + entry.getKey() + ")", i -> {
+                    var s = (BitBoardGameState) states[i];
+                    return k.sum(Patterns.weights().phase(s.countTokens(1) + s.countTokens(2)), s.patterns());
+                });
+            }
+        }
+        for (var depth : new int[]{2, 4}) {
+            // A new AI for each search, so the transposition table does not answer from the last operation.
+            benchmarks.put("OthelloAIBob search depth " + depth, i -> {
+                var ai = new OthelloAIBob() {
+                    @Override
+                    public int maxDepth() {
+                        return depth;
+                    }
+
+                    @Override
+                    public int transpositionTableBits() {
+                        return 12;
+                    }
+
+                    @Override
+                    public int endgameEmpties() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Path openingBook() {
+                        return null;
+                    }
+                };
+                var move = ai.decideMove(positions[i]);
+                return move.col * size + move.row;
+            });
+        }
+        return benchmarks;
+    }
+
+    private static void run(String name, int size, Operation operation, long time, int iterations) {
+        // Warm up for as long as one iteration, so the JIT has compiled the operation before it is measured.
+        measure(operation, time);
+
+        var nanos = new double[iterations];
+        var bytes = 0.0;
+        for (int i = 0; i < iterations; i++) {
+            var result = measure(operation, time);
+            nanos[i] = result[0];
+            bytes += result[1] / iterations;
+        }
+
+        var mean = Arrays.stream(nanos).average().orElse(0);
+        var deviation = Math.sqrt(Arrays.stream(nanos).map(n -> (n - mean) * (n - mean)).sum() / iterations);
+        System.out.printf("%-40s %4d %12.1f %10.1f %12.1f%n", name, size, mean, deviation, bytes);
+    }
+
+    // Runs the operation over the positions for about the given time. Returns the nanoseconds and bytes allocated per
+    // operation.
+    private static double[] measure(Operation operation, long time) {
+        var thread = Thread.currentThread().getId();
+        var ops = 0L;
+        var result = 0L;
+        var bytes = THREADS.getThreadAllocatedBytes(thread);
+        var start = System.nanoTime();
+        var elapsed = 0L;
+        while (elapsed < time) {
+            for (int i = 0; i < POSITIONS; i++) {
+                result += operation.run(i);
+            }
+            ops += POSITIONS;
+            elapsed = System.nanoTime() - start;
+        }
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+        sink += result;
+        return new double[]{(double) elapsed / ops, (double) bytes / ops};
+    }
+
+    // Positions from seeded random games, spread over the opening, middle game and endgame. All of them have a legal
+    // move for the player in turn.
+    private static GameState[] positions(int size) {
+        var random = new Random(size);
+        var positions = new GameState[POSITIONS];
+        var found = 0;
+        while (found < POSITIONS) {
+            var s = new GameState(size, 1);
+            var moves = 4 + random.nextInt(size * size - 10);
+            for (int i = 0; i < moves && !s.isFinished(); i++) {
+                var legal = s.legalMoves();
+                if (legal.isEmpty()) {
+                    s.changePlayer();
+                    legal = s.legalMoves();
+                }
+                s.insertToken(legal.get(random.nextInt(legal.size())));
+            }
+            if (!s.legalMoves().isEmpty()) {
+                positions[found++] = new GameState(s.getBoard(), s.getPlayerInTurn());
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.*;
+
+/**
+ * Class to represent the state of a game of Othello.  The state is defined by a 2-dimensional
+ * board and whose turn it is.
+ * <p>
+ * The board itself is stored by the subclasses: 8x8 boards use {@link BitBoardGameState}, all other sizes use
+ * {@link ArrayGameState}. Use {@link #of(GameState)} to get the fastest representation for a given game.
+ *
+ * @author Mai Ajspur & Jonas Jørgensen
+ * @version 9.2.2023
+ */
+abstract class BetterGameState {
+    protected int currentPlayer;    // The player who is next to put a token on the board. Value is 1 or 2.
+    protected final int size;       // The number of columns = the number of rows on the board
+    protected int blackTokens;
+    protected int whiteTokens;
+    protected final long[] zobrist;   // Zobrist keys, see Zobrist.keys()
+    protected long hash;              // Zobrist hash of the board and the player in turn
+    private Undo[] history;         // Records of the moves made with makeMove() that have not been undone yet
+    private int moveCount;          // The number of records in use in history
+
+    /**
+     * What is needed to take back a move made with makeMove(). The records are owned and reused by the game state,
+     * so making and undoing moves does not allocate once the search has been through a given depth.
+     */
+    static final class Undo {
+        int square;         // The square the token was put on (col * size + row)
+        int player;         // The player in turn before the move
+        int blackTokens;
+        int whiteTokens;
+        long hash;
+        int blackFrontier;  // ArrayGameState: the frontier counts before the move
+        int whiteFrontier;
+        long flips;         // BitBoardGameState: mask of the turned tokens
+        int[] flipped;      // ArrayGameState: squares of the turned tokens
+        int flipCount;
+    }
+
+    //************ Constructors ****************//
+
+    protected BetterGameState(int size, int playerToTakeTurn, int black, int white) {
+        this.size = size;
+        this.currentPlayer = playerToTakeTurn;
+        this.blackTokens = black;
+        this.whiteTokens = white;
+        this.zobrist = Zobrist.keys(size);
+    }
+
+    /**
+     * Computes the Zobrist hash of the state from scratch. Subclasses call this once their board is set up, after
+     * which the hash is kept up to date by every move.
+     */
+    protected long computeHash() {
+        var h = currentPlayer == 2 ? Zobrist.SIDE : 0;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                var token = getToken(col, row);
+                if (token != 0) {
+                    h ^= zobrist[(token - 1) * size * size + col * size + row];
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns a copy of the given game state, backed by a bitboard if the board is 8x8 and by an array otherwise.
+     */
+    public static BetterGameState of(GameState s) {
+        if (s.getBoard().length == BitBoardGameState.SIZE) {
+            return new BitBoardGameState(s);
+        } else {
+            return new ArrayGameState(s);
+        }
+    }
+
+    /**
+     * Returns an independent copy of this game state.
+     */
+    public abstract BetterGameState copy();
+
+    //************ Getter methods *******************//
+
+    /**
+     * Returns an array representing the board of this game state. Depending on the representation this might be a
+     * freshly built array, so prefer getToken() when only a few positions are needed.
+     */
+    public abstract int[][] getBoard();
+
+    /**
+     * Returns the token at the given position, i.e. 0 (empty), 1 (black) or 2 (white).
+     */
+    public abstract int getToken(int col, int row);
+
+    /**
+     * Returns the player whose turn it is, i.e. 1 (black) or 2 (white).
+     */
+    public int getPlayerInTurn() {
+        return currentPlayer;
+    }
+
+    /**
+     * Returns the number of columns (and rows) of the board.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the Zobrist hash of the board and the player in turn. Equal states have equal hashes.
+     */
+    public long hash() {
+        return hash;
+    }
+
+    //************* Methods ****************//
+
+    /**
+     * Skips the turn of the current player (without) changing the board.
+     */
+    public void changePlayer() {
+        currentPlayer = currentPlayer == 1 ? 2 : 1;
+        hash ^= Zobrist.SIDE;
+    }
+
+    /**
+     * Returns true if the game is finished (i.e. none of the players can make any legal moves)
+     * and false otherwise.
+     */
+    public boolean isFinished() {
+        return mobility(1) == 0 && mobility(2) == 0;
+    }
+
+    /**
+     * Counts tokens of the player 1 (black) and player 2 (white), respectively, and returns an array
+     * with the numbers in that order.
+     */
+    public static int[] countTokens(int[][] board) {
+        int tokens1 = 0;
+        int tokens2 = 0;
+        for (int[] ints : board) {
+            for (int v : ints) {
+                if (v == 1)
+                    tokens1++;
+                else if (v == 2)
+                    tokens2++;
+            }
+        }
+        return new int[]{tokens1, tokens2};
+    }
+
+    public int countTokens(int player) {
+        if (player == 1)
+            return blackTokens;
+        else
+            return whiteTokens;
+    }
+
+    /**
+     * If it is legal for the current player to put a token at the given place, then the token is inserted, the required
+     * tokens from the opponent is turned, and true is returned. If the move is not legal, false is returned.
+     * False is also returned if the given place does not represent a place on the board.
+     */
+    public boolean insertToken(Position place) {
+        return onBoard(place) && play(place.col * size + place.row, null);
+    }
+
+    /**
+     * Like insertToken(Position), but takes the square col * size + row of the place, which must be on the board.
+     */
+    public boolean insertToken(int sq) {
+        return play(sq, null);
+    }
+
+    /**
+     * Like insertToken(), but remembers the move so it can be taken back with undoMove(). Nothing is remembered if the
+     * move is not legal.
+     */
+    public boolean makeMove(Position place) {
+        return onBoard(place) && makeMove(place.col * size + place.row);
+    }
+
+    /**
+     * Like makeMove(Position), but takes the square col * size + row of the place, which must be on the board.
+     */
+    public boolean makeMove(int sq) {
+        if (history == null) {
+            history = new Undo[size * size];
+        }
+
+        var undo = history[moveCount];
+        if (undo == null) {
+            undo = history[moveCount] = new Undo();
+        }
+
+        undo.player = currentPlayer;
+        undo.blackTokens = blackTokens;
+        undo.whiteTokens = whiteTokens;
+        undo.hash = hash;
+        if (!play(sq, undo)) {
+            return false;
+        }
+
+        moveCount++;
+        return true;
+    }
+
+    /**
+     * Takes back the latest move made with makeMove() that has not been taken back already.
+     */
+    public void undoMove() {
+        var undo = history[--moveCount];
+        unplay(undo);
+        currentPlayer = undo.player;
+        blackTokens = undo.blackTokens;
+        whiteTokens = undo.whiteTokens;
+        hash = undo.hash;
+    }
+
+    private boolean onBoard(Position place) {
+        return place.col >= 0 && place.row >= 0 && place.col < size && place.row < size;
+    }
+
+    /**
+     * Performs the move as described by insertToken(). If undo is not null, the turned tokens are recorded in it.
+     */
+    protected abstract boolean play(int sq, Undo undo);
+
+    /**
+     * Restores the tokens changed by the move recorded in undo. The player, token counts and hash are restored by the
+     * caller.
+     */
+    protected abstract void unplay(Undo undo);
+
+    /**
+     * Returns an iterator of all the positions on the board that constitutes a legal move for the current player.
+     */
+    public abstract Iterator<Position> legalMoves();
+
+    /**
+     * Returns whether the position is a legal move for the current player.
+     */
+    public boolean isLegalMove(Position p) {
+        return isLegal(p.col * size + p.row);
+    }
+
+    //************* Evaluation features ****************//
+    // These are kept up to date as moves are made and undone, or computed in constant time from the bitboard, so
+    // evaluating a position does not have to scan the board.
+
+    // Regions of the board. The X-squares are diagonally next to a corner and the C-squares are on an edge next to a
+    // corner. The near-edge squares are the rest of the ring just inside the edges.
+    static final int CORNER = 0;
+    static final int X_SQUARE = 1;
+    static final int C_SQUARE = 2;
+    static final int EDGE = 3;
+    static final int NEAR_EDGE = 4;
+    static final int CENTER = 5;
+    static final int REGIONS = 6;
+
+    /**
+     * Returns the region of each square on a board of the given size, indexed by col * size + row.
+     */
+    static int[] regions(int size) {
+        var regions = new int[size * size];
+        var last = size - 1;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                var edgeCol = col == 0 || col == last;
+                var edgeRow = row == 0 || row == last;
+                var nearCol = col == 1 || col == last - 1;
+                var nearRow = row == 1 || row == last - 1;
+                int region;
+                if (edgeCol && edgeRow) region = CORNER;
+                else if (nearCol && nearRow) region = X_SQUARE;
+                else if (edgeCol && nearRow || edgeRow && nearCol) region = C_SQUARE;
+                else if (edgeCol || edgeRow) region = EDGE;
+                else if (nearCol || nearRow) region = NEAR_EDGE;
+                else region = CENTER;
+                regions[col * size + row] = region;
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Returns the number of tokens the given player has in the given region.
+     */
+    public abstract int regionCount(int player, int region);
+
+    /**
+     * Returns the number of corners the given player has.
+     */
+    public int corners(int player) {
+        return regionCount(player, CORNER);
+    }
+
+    /**
+     * Returns the number of the given player's tokens that are next to an empty position. These can be turned from
+     * that position, so fewer is better.
+     */
+    public abstract int frontier(int player);
+
+    //************* Allocation-free methods ****************//
+    // Squares are given as col * size + row. None of these methods allocate, so they are the ones to use in the search.
+
+    /**
+     * Puts the squares of all legal moves for the current player into moves, in increasing order, and returns how many
+     * there are. moves must have room for size * size squares.
+     */
+    public abstract int generateMoves(int[] moves);
+
+    /**
+     * Returns the number of legal moves the given player would have if it were their turn.
+     */
+    public abstract int mobility(int player);
+
+    /**
+     * Returns whether putting a token on the given square is a legal move for the current player.
+     */
+    public abstract boolean isLegal(int sq);
+
+    //************* Symmetry ****************//
+
+    /**
+     * Returns the key of this state's symmetry class: the same for all 8 rotations and reflections of the board, and
+     * for the board with the colours swapped, since the key only tells the tokens of the player in turn from those of
+     * the opponent. Use Symmetry.Canonical.fromCanonical() to map moves found for the key's orientation back to this
+     * state.
+     */
+    public Symmetry.Canonical canonical() {
+        var player = currentPlayer;
+        var cells = size * size;
+        Symmetry.Canonical best = null;
+        for (int symmetry = 0; symmetry < Symmetry.COUNT; symmetry++) {
+            long high = 0;
+            long low = 0;
+            for (int sq = 0; sq < cells; sq++) {
+                var token = getToken(sq / size, sq % size);
+                if (token == 0) {
+                    continue;
+                }
+                var to = Symmetry.square(sq, size, symmetry);
+                if (cells <= 64) {
+                    // Small enough to store the tokens themselves, like the bitboards do.
+                    if (token == player) {
+                        high |= 1L << to;
+                    } else {
+                        low |= 1L << to;
+                    }
+                } else {
+                    var index = 2 * (to * 2 + (token == player ? 0 : 1));
+                    high ^= Zobrist.mix(index);
+                    low ^= Zobrist.mix(index + 1);
+                }
+            }
+            var key = new Symmetry.Key(high, low);
+            if (best == null || key.compareTo(best.key()) < 0) {
+                best = new Symmetry.Canonical(key, symmetry, size);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Shift-based move generation and capture computation on 64-bit boards. Square (col, row) is bit col * 8 + row, so a
+ * step in the column direction is a shift by 8 and a step in the row direction is a shift by 1. Steps with a row
+ * component are masked so tokens cannot wrap around from one column to the next.
+ */
+final class BitBoard {
+    static final long NOT_ROW_0 = 0xFEFEFEFEFEFEFEFEL;
+    static final long NOT_ROW_7 = 0x7F7F7F7F7F7F7F7FL;
+    static final long INNER_ROWS = NOT_ROW_0 & NOT_ROW_7;
+
+    private BitBoard() {
+    }
+
+    static int square(int col, int row) {
+        return col * 8 + row;
+    }
+
+    static int col(int sq) {
+        return sq >>> 3;
+    }
+
+    static int row(int sq) {
+        return sq & 7;
+    }
+
+    /**
+     * Returns the mask of the positions on the 8x8 board that contain the given player's tokens.
+     */
+    static long mask(int[][] board, int player) {
+        var mask = 0L;
+        for (int col = 0; col < 8; col++) {
+            for (int row = 0; row < 8; row++) {
+                if (board[col][row] == player) {
+                    mask |= 1L << square(col, row);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the mask of legal moves for the player owning p against the player owning o.
+     */
+    static long moves(long p, long o) {
+        var empty = ~(p | o);
+        var inner = o & INNER_ROWS;
+        return (up(p, o, 8) | down(p, o, 8)
+                | up(p, inner, 1) | down(p, inner, 1)
+                | up(p, inner, 7) | down(p, inner, 7)
+                | up(p, inner, 9) | down(p, inner, 9)) & empty;
+    }
+
+    // Squares reached by a line of o tokens starting next to a p token, walking towards higher bits. The o mask must
+    // already exclude the edge rows for steps with a row component.
+    private static long up(long p, long o, int shift) {
+        var t = (p << shift) & o;
+        t |= (t << shift) & o;
+        t |= (t << shift) & o;
+        t |= (t << shift) & o;
+        t |= (t << shift) & o;
+        t |= (t << shift) & o;
+        return t << shift;
+    }
+
+    // Same as up(), but walking towards lower bits.
+    private static long down(long p, long o, int shift) {
+        var t = (p >>> shift) & o;
+        t |= (t >>> shift) & o;
+        t |= (t >>> shift) & o;
+        t |= (t >>> shift) & o;
+        t |= (t >>> shift) & o;
+        t |= (t >>> shift) & o;
+        return t >>> shift;
+    }
+
+    /**
+     * Returns the mask of the squares next to any of the squares in x.
+     */
+    static long neighbours(long x) {
+        var vertical = x << 8 | x >>> 8;
+        var withVertical = x | vertical;
+        return vertical
+                | (withVertical << 1) & NOT_ROW_0
+                | (withVertical >>> 1) & NOT_ROW_7;
+    }
+
+    /**
+     * Returns the mask of o tokens that are turned when the player owning p puts a token on the given square. The
+     * result is 0 if the move is not legal.
+     */
+    static long flips(long p, long o, int sq) {
+        // In each direction, the o tokens are turned if the first square after them is a p token. Walking towards
+        // higher bits that square is the lowest bit of the ray that is not an o token, walking towards lower bits the
+        // highest.
+        var notO = ~o;
+        var rays = sq * 8;
+        var flips = 0L;
+        for (int d = 0; d < 4; d++) {
+            var ray = RAYS[rays + d];
+            var below = (Long.lowestOneBit(notO & ray) & p) - 1;
+            // below is -1 if there is no p token to end the line.
+            flips |= ray & below & ~(below >> 63);
+        }
+        for (int d = 4; d < 8; d++) {
+            var ray = RAYS[rays + d];
+            var outflank = Long.highestOneBit(notO & ray) & p;
+            flips |= ray & -(outflank << 1);
+        }
+        return flips;
+    }
+
+    // For each square, the squares from it to the edge of the board in each direction, not including the square
+    // itself, at index sq * 8 + direction. Directions 0 to 3 walk towards higher bits, 4 to 7 towards lower bits.
+    private static final long[] RAYS = rays();
+
+    private static long[] rays() {
+        int[][] steps = {{1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}};
+        var rays = new long[64 * 8];
+        for (int sq = 0; sq < 64; sq++) {
+            for (int d = 0; d < 8; d++) {
+                var col = col(sq) + steps[d][0];
+                var row = row(sq) + steps[d][1];
+                for (; col >= 0 && col < 8 && row >= 0 && row < 8; col += steps[d][0], row += steps[d][1]) {
+                    rays[sq * 8 + d] |= 1L << square(col, row);
+                }
+            }
+        }
+        return rays;
+    }
+}
@@ -0,0 +1,221 @@
+import java.util.*;
+
+/**
+ * Game state for 8x8 boards backed by two 64-bit masks, one per player. Square (col, row) is bit col * 8 + row, so
+ * iterating the bits from low to high visits the squares in the same order as ArrayGameState.
+ */
+class BitBoardGameState extends BetterGameState {
+    static final int SIZE = 8;
+
+    private long black;
+    private long white;
+    // Index of each pattern instance, see Patterns, or null until patterns() is first called. Only states that are
+    // evaluated with patterns pay for keeping them up to date on every move.
+    private int[] patterns;
+
+    public BitBoardGameState(long black, long white, int playerToTakeTurn) {
+        super(SIZE, playerToTakeTurn, Long.bitCount(black), Long.bitCount(white));
+        this.black = black;
+        this.white = white;
+        this.hash = computeHash();
+    }
+
+    public BitBoardGameState(GameState s) {
+        this(BitBoard.mask(s.getBoard(), 1), BitBoard.mask(s.getBoard(), 2), s.getPlayerInTurn());
+    }
+
+    public BitBoardGameState(BitBoardGameState s) {
+        this(s.black, s.white, s.getPlayerInTurn());
+        if (s.patterns != null) {
+            patterns = s.patterns.clone();
+        }
+    }
+
+    @Override
+    public BetterGameState copy() {
+        return new BitBoardGameState(this);
+    }
+
+    //************ Getter methods *******************//
+
+    @Override
+    public int[][] getBoard() {
+        var board = new int[SIZE][SIZE];
+        for (int col = 0; col < SIZE; col++) {
+            for (int row = 0; row < SIZE; row++) {
+                board[col][row] = getToken(col, row);
+            }
+        }
+        return board;
+    }
+
+    @Override
+    public int getToken(int col, int row) {
+        var bit = 1L << BitBoard.square(col, row);
+        if ((black & bit) != 0) return 1;
+        if ((white & bit) != 0) return 2;
+        return 0;
+    }
+
+    /**
+     * Returns the mask of the tokens belonging to the current player.
+     */
+    public long player() {
+        return currentPlayer == 1 ? black : white;
+    }
+
+    /**
+     * Returns the mask of the tokens belonging to the opponent of the current player.
+     */
+    public long opponent() {
+        return currentPlayer == 1 ? white : black;
+    }
+
+    @Override
+    public Symmetry.Canonical canonical() {
+        return Symmetry.canonical(player(), opponent());
+    }
+
+    /**
+     * Returns the index of each pattern instance on the board. They are found on the first call, and from then on kept
+     * up to date as moves are made and taken back. The array must not be changed.
+     */
+    public int[] patterns() {
+        if (patterns == null) {
+            patterns = Patterns.indices(black, white);
+        }
+        return patterns;
+    }
+
+    //************* Methods ****************//
+
+    @Override
+    public boolean isFinished() {
+        return BitBoard.moves(black, white) == 0 && BitBoard.moves(white, black) == 0;
+    }
+
+    @Override
+    protected boolean play(int sq, Undo undo) {
+        if (((black | white) & (1L << sq)) != 0) // The position is not empty
+            return false;
+
+        var flips = BitBoard.flips(player(), opponent(), sq);
+        if (flips == 0)
+            return false;
+
+        if (undo != null) {
+            undo.square = sq;
+            undo.flips = flips;
+        }
+
+        for (var f = flips; f != 0; f &= f - 1) {
+            var flipped = Long.numberOfTrailingZeros(f);
+            hash ^= zobrist[flipped] ^ zobrist[64 + flipped];
+        }
+        hash ^= zobrist[(currentPlayer - 1) * 64 + sq];
+
+        var placed = flips | (1L << sq);
+        var captures = Long.bitCount(flips);
+        if (currentPlayer == 1) {
+            black |= placed;
+            white &= ~flips;
+            blackTokens += captures + 1;
+            whiteTokens -= captures;
+        } else {
+            white |= placed;
+            black &= ~flips;
+            whiteTokens += captures + 1;
+            blackTokens -= captures;
+        }
+        if (patterns != null) {
+            Patterns.play(patterns, sq, flips, currentPlayer, 1);
+        }
+        changePlayer();
+        return true;
+    }
+
+    @Override
+    protected void unplay(Undo undo) {
+        var placed = undo.flips | (1L << undo.square);
+        if (undo.player == 1) {
+            black &= ~placed;
+            white |= undo.flips;
+        } else {
+            white &= ~placed;
+            black |= undo.flips;
+        }
+        if (patterns != null) {
+            Patterns.play(patterns, undo.square, undo.flips, undo.player, -1);
+        }
+    }
+
+    @Override
+    public Iterator<Position> legalMoves() {
+        return new Iterator<>() {
+            long moves = BitBoard.moves(player(), opponent());
+
+            @Override
+            public boolean hasNext() {
+                return moves != 0;
+            }
+
+            @Override
+            public Position next() {
+                if (moves == 0) {
+                    throw new NoSuchElementException("empty");
+                }
+                var sq = Long.numberOfTrailingZeros(moves);
+                moves &= moves - 1;
+                return new Position(BitBoard.col(sq), BitBoard.row(sq));
+            }
+        };
+    }
+
+    @Override
+    public boolean isLegal(int sq) {
+        return ((black | white) & (1L << sq)) == 0 && BitBoard.flips(player(), opponent(), sq) != 0;
+    }
+
+    // Masks of the regions of the board, see regions().
+    private static final long[] REGION_MASKS = new long[REGIONS];
+
+    static {
+        var regions = regions(SIZE);
+        for (int sq = 0; sq < regions.length; sq++) {
+            REGION_MASKS[regions[sq]] |= 1L << sq;
+        }
+    }
+
+    @Override
+    public int regionCount(int player, int region) {
+        return Long.bitCount((player == 1 ? black : white) & REGION_MASKS[region]);
+    }
+
+    @Override
+    public int frontier(int player) {
+        return Long.bitCount((player == 1 ? black : white) & BitBoard.neighbours(~(black | white)));
+    }
+
+    /**
+     * Returns the mask of the legal moves for the current player.
+     */
+    public long moveMask() {
+        return BitBoard.moves(player(), opponent());
+    }
+
+    @Override
+    public int generateMoves(int[] moves) {
+        var n = 0;
+        for (var m = moveMask(); m != 0; m &= m - 1) {
+            moves[n++] = Long.numberOfTrailingZeros(m);
+        }
+        return n;
+    }
+
+    @Override
+    public int mobility(int player) {
+        return player == 1
+                ? Long.bitCount(Kernels.INSTANCE.moves(black, white))
+                : Long.bitCount(Kernels.INSTANCE.moves(white, black));
+    }
+}
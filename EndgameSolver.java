@@ -0,0 +1,596 @@
+import java.util.*;
+
+/**
+ * Exact solver for the end of 8x8 games. It searches every line to the end of the game and scores positions by their
+ * final disc difference, so its results are exact rather than heuristic. The search is negamax on two bitboards: p is
+ * always the player in turn and o the opponent.
+ * <p>
+ * A solve first finds out whether the game is won, lost or drawn with a null window around 0, which is much quicker
+ * than finding the exact score, and then finds the exact score within the half that was established. The first pass
+ * has a deadline of its own, so that a caller has time left to fall back on if it fails, whereas the second one can
+ * use all the time, as its win, loss or draw move is there to fall back on.
+ */
+final class EndgameSolver {
+    // Positions with at least this many empty squares are stored in the transposition table. Below that, looking them
+    // up costs more than searching them.
+    private static final int TABLE_EMPTIES = 7;
+    // Positions with at least this many empty squares order their moves by how few replies they leave the opponent.
+    // Below that, ordering by parity alone is cheaper.
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+    // Positions with at least this many empty squares check whether the opponent has so many stable tokens that the
+    // search cannot reach alpha.
+    private static final int STABILITY_EMPTIES = 7;
+    // Positions with at least this many empty squares first look up their children in the transposition table, in
+    // case one of them is already known to be good enough for a cutoff.
+    private static final int ETC_EMPTIES = 10;
+    // Positions with at least this many empty squares order their moves by a search one move deep with a mobility
+    // evaluation, see sortScore(), and from SORT_2_EMPTIES on two moves deep. It costs more than counting replies, but
+    // the subtrees are large enough for the better order to pay for it.
+    private static final int SORT_EMPTIES = 12;
+    private static final int SORT_2_EMPTIES = 14;
+    private static final int INFINITY = 65;
+    private static final int SORT_INFINITY = 1_000_000;
+
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long ROW_EDGES = ~BitBoard.INNER_ROWS;
+    private static final long COL_EDGES = 0xFF000000000000FFL;
+    // The diagonals of the board, each as a mask, in the directions of shifts by 9 and by 7.
+    private static final long[] DIAGONALS_9 = diagonals(1);
+    private static final long[] DIAGONALS_7 = diagonals(-1);
+    // For each parity, see parity(), the squares of the quadrants with an odd number of empty squares.
+    private static final long[] QUADRANTS = new long[16];
+
+    static {
+        for (int parity = 0; parity < 16; parity++) {
+            for (int sq = 0; sq < 64; sq++) {
+                if ((parity & quadrant(sq)) != 0) {
+                    QUADRANTS[parity] |= 1L << sq;
+                }
+            }
+        }
+    }
+
+    private final TranspositionTable table;
+    private final int[][] moveLists = new int[61][];
+    private final int[][] scoreLists = new int[61][];
+    // The tokens each move in moveLists turns, worked out when ordering them.
+    private final long[][] flipLists = new long[61][];
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private int score;
+
+    EndgameSolver(int tableBits) {
+        table = new TranspositionTable(tableBits, TranspositionTable.Replacement.DEPTH_PREFERRED);
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new int[64];
+            scoreLists[i] = new int[64];
+            flipLists[i] = new long[64];
+        }
+    }
+
+    /**
+     * Returns the square of the best move for the player owning p, or -1 if p has no legal move or the time ran out
+     * before it was known whether any move wins. If the time runs out during the exact search, a move that is as good
+     * as any other in terms of win, loss or draw is returned.
+     *
+     * @param p        Tokens of the player in turn, who must have a legal move.
+     * @param o        Tokens of the opponent.
+     * @param wldDeadline The solve is given up when System.nanoTime() passes this before it is known whether any move
+     *                    wins.
+     * @param deadline    The exact search is given up when System.nanoTime() passes this.
+     * @param random      Used to choose between equally good moves.
+     */
+    int solve(long p, long o, long wldDeadline, long deadline, Random random) {
+        if (BitBoard.moves(p, o) == 0) {
+            return -1;
+        }
+        this.deadline = wldDeadline;
+        aborted = false;
+        nodes = 0;
+        table.newSearch();
+
+        var wldMove = searchRoot(p, o, -1, 1, random);
+        if (aborted) {
+            return -1;
+        }
+        var wld = score;
+        if (wld == 0) {
+            return wldMove;
+        }
+
+        this.deadline = deadline;
+        var exactMove = wld > 0 ? searchRoot(p, o, 0, INFINITY, random) : searchRoot(p, o, -INFINITY, 0, random);
+        if (aborted) {
+            score = wld;
+            return wldMove;
+        }
+        return exactMove;
+    }
+
+    /**
+     * Returns the score of the last solve: the final disc difference from the point of view of the player in turn if
+     * the solve finished, otherwise just its sign.
+     */
+    int score() {
+        return score;
+    }
+
+    long nodes() {
+        return nodes;
+    }
+
+    private int searchRoot(long p, long o, int alpha, int beta, Random random) {
+        var moves = moveLists[60];
+        var n = 0;
+        for (var m = BitBoard.moves(p, o); m != 0; m &= m - 1) {
+            moves[n++] = Long.numberOfTrailingZeros(m);
+        }
+        for (int i = n - 1; i > 0; i--) {
+            var j = random.nextInt(i + 1);
+            var t = moves[i];
+            moves[i] = moves[j];
+            moves[j] = t;
+        }
+
+        var empty = Long.bitCount(~(p | o));
+        var parity = parity(~(p | o));
+        order(p, o, moves, scoreLists[60], flipLists[60], n, empty, parity, -1);
+
+        var best = -INFINITY;
+        var bestMove = moves[0];
+        for (int i = 0; i < n; i++) {
+            pick(moves, scoreLists[60], flipLists[60], i, n);
+            var sq = moves[i];
+            var flips = flipLists[60][i];
+            var childP = o & ~flips;
+            var childO = p | flips | 1L << sq;
+            var childParity = parity ^ quadrant(sq);
+            var a = Math.max(alpha, best);
+            int v;
+            // Like in search().
+            if (i == 0 || beta - a == 1) {
+                v = -search(childP, childO, -beta, -a, empty - 1, childParity);
+            } else {
+                v = -search(childP, childO, -a - 1, -a, empty - 1, childParity);
+                if (v > a && v < beta && !aborted) {
+                    v = -search(childP, childO, -beta, -v, empty - 1, childParity);
+                }
+            }
+            if (aborted) {
+                break;
+            }
+            if (v > best) {
+                best = v;
+                bestMove = sq;
+                if (best >= beta) {
+                    break;
+                }
+            }
+        }
+        score = best;
+        return bestMove;
+    }
+
+    private int search(long p, long o, int alpha, int beta, int empty, int parity) {
+        if (aborted) {
+            return 0;
+        }
+        if ((++nodes & 4095) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+            return 0;
+        }
+
+        if (empty < FASTEST_FIRST_EMPTIES) {
+            return shallow(p, o, alpha, beta, empty, parity);
+        }
+
+        // Stability cutoff: the opponent keeps their stable tokens to the end, so we get at most the rest of the board.
+        // Only worth finding out if they have enough tokens for it to matter.
+        if (empty >= STABILITY_EMPTIES && 64 - 2 * Long.bitCount(o) <= alpha) {
+            var upper = 64 - 2 * Long.bitCount(stable(o, p));
+            if (upper <= alpha) {
+                return upper;
+            }
+        }
+
+        var moveMask = BitBoard.moves(p, o);
+        if (moveMask == 0) {
+            if (BitBoard.moves(o, p) == 0) {
+                return Long.bitCount(p) - Long.bitCount(o);
+            }
+            return -search(o, p, -beta, -alpha, empty, parity);
+        }
+
+        var key = 0L;
+        var hashMove = -1;
+        if (empty >= TABLE_EMPTIES) {
+            key = key(p, o);
+            var entry = table.probe(key);
+            if (entry != 0) {
+                var score = TranspositionTable.score(entry);
+                var bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && score >= beta
+                        || bound == TranspositionTable.UPPER && score <= alpha) {
+                    return score;
+                }
+                hashMove = TranspositionTable.move(entry);
+            }
+        }
+
+        var moves = moveLists[empty];
+        var scores = scoreLists[empty];
+        var n = 0;
+        for (var m = moveMask; m != 0; m &= m - 1) {
+            moves[n++] = Long.numberOfTrailingZeros(m);
+        }
+        var flipList = flipLists[empty];
+        order(p, o, moves, scores, flipList, n, empty, parity, hashMove);
+
+        // Enhanced transposition cutoff: a child stored with a score at most -beta gives a cutoff without searching
+        // any of them.
+        if (empty >= ETC_EMPTIES) {
+            for (int i = 0; i < n; i++) {
+                var flips = flipList[i];
+                var entry = table.probe(key(o & ~flips, p | flips | 1L << moves[i]));
+                if (entry != 0) {
+                    var score = -TranspositionTable.score(entry);
+                    var bound = TranspositionTable.bound(entry);
+                    if (score >= beta && (bound == TranspositionTable.EXACT || bound == TranspositionTable.UPPER)) {
+                        return score;
+                    }
+                }
+            }
+        }
+
+        var alphaOrig = alpha;
+        var best = -INFINITY;
+        var bestMove = -1;
+        for (int i = 0; i < n; i++) {
+            pick(moves, scores, flipList, i, n);
+            var sq = moves[i];
+            var flips = flipList[i];
+            var childP = o & ~flips;
+            var childO = p | flips | 1L << sq;
+            var childParity = parity ^ quadrant(sq);
+            var a = Math.max(alpha, best);
+            int v;
+            // Principal variation search: after the first move, the others only have to be shown to be no better,
+            // which a null window does faster. Only a move that turns out better is searched again with the window.
+            if (i == 0 || beta - a == 1) {
+                v = -search(childP, childO, -beta, -a, empty - 1, childParity);
+            } else {
+                v = -search(childP, childO, -a - 1, -a, empty - 1, childParity);
+                if (v > a && v < beta) {
+                    v = -search(childP, childO, -beta, -v, empty - 1, childParity);
+                }
+            }
+            if (v > best) {
+                best = v;
+                bestMove = sq;
+                if (best >= beta) {
+                    break;
+                }
+            }
+        }
+
+        if (empty >= TABLE_EMPTIES && !aborted) {
+            var bound = best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+            table.store(key, empty, bound, best, bestMove);
+        }
+        return best;
+    }
+
+    // Positions with few empty squares make up most of the tree, and ordering their moves costs more than it saves. The
+    // empty squares are tried directly, those in quadrants with an odd number of empty squares first, by parity.
+    private int shallow(long p, long o, int alpha, int beta, int empty, int parity) {
+        var empties = ~(p | o);
+        switch (empty) {
+            case 0:
+                return Long.bitCount(p) - Long.bitCount(o);
+            case 1:
+                return last1(p, o, Long.numberOfTrailingZeros(empties));
+            case 2: {
+                var a = Long.numberOfTrailingZeros(empties);
+                var b = Long.numberOfTrailingZeros(empties & empties - 1);
+                return last2(p, o, alpha, beta, a, b, false);
+            }
+            case 3: {
+                var a = Long.numberOfTrailingZeros(empties);
+                empties &= empties - 1;
+                var b = Long.numberOfTrailingZeros(empties);
+                empties &= empties - 1;
+                var c = Long.numberOfTrailingZeros(empties);
+                return last3(p, o, alpha, beta, a, b, c, false);
+            }
+        }
+
+        nodes++;
+        var best = -INFINITY;
+        var odd = QUADRANTS[parity];
+        for (int pass = 0; pass < 2; pass++) {
+            for (var squares = empties & (pass == 0 ? odd : ~odd); squares != 0; squares &= squares - 1) {
+                var sq = Long.numberOfTrailingZeros(squares);
+                var flips = BitBoard.flips(p, o, sq);
+                if (flips == 0) {
+                    continue;
+                }
+                var v = -shallow(o & ~flips, p | flips | 1L << sq, -beta, -Math.max(alpha, best), empty - 1,
+                        parity ^ quadrant(sq));
+                if (v > best) {
+                    best = v;
+                    if (best >= beta) {
+                        return best;
+                    }
+                }
+            }
+        }
+
+        if (best == -INFINITY) {
+            if (BitBoard.moves(o, p) == 0) {
+                return Long.bitCount(p) - Long.bitCount(o);
+            }
+            return -shallow(o, p, -beta, -alpha, empty, parity);
+        }
+        return best;
+    }
+
+    // Orders moves by parity: a move into a quadrant with an odd number of empty squares leaves the opponent without
+    // the last move there, which tends to be good. With many empty squares, moves that leave the opponent with few
+    // replies come first, as they lead to the smallest trees. Replies on a corner count twice, and of moves that leave
+    // as many replies, the one that leaves fewer empty squares next to our tokens comes first. Corners, and edge
+    // squares next to a corner of ours, can never be turned, so each of them we hold counts as much as a reply less.
+    // With more empty squares still, see SORT_EMPTIES, moves are ordered by sortScore(). The tokens each move turns are
+    // stored in flipList.
+    private static void order(long p, long o, int[] moves, int[] scores, long[] flipList, int n, int empty, int parity,
+                              int hashMove) {
+        for (int i = 0; i < n; i++) {
+            var sq = moves[i];
+            var flips = BitBoard.flips(p, o, sq);
+            flipList[i] = flips;
+            if (sq == hashMove) {
+                scores[i] = Integer.MAX_VALUE;
+                continue;
+            }
+            var score = (parity & quadrant(sq)) != 0 ? 1 : 0;
+            if (empty >= SORT_EMPTIES) {
+                var depth = empty >= SORT_2_EMPTIES ? 2 : 1;
+                score = -sortScore(o & ~flips, p | flips | 1L << sq, depth, -SORT_INFINITY, SORT_INFINITY);
+            } else if (empty >= FASTEST_FIRST_EMPTIES) {
+                var after = p | flips | 1L << sq;
+                var replies = BitBoard.moves(o & ~flips, after);
+                var potential = Long.bitCount(BitBoard.neighbours(after) & ~(after | o));
+                var safe = after & (CORNERS | (after & 0x0100000000000001L) << 1 | (after & 0x8000000000000080L) >>> 1
+                        | (after & 0x0000000000000081L) << 8 | (after & 0x8100000000000000L) >>> 8);
+                score += (64 - Long.bitCount(replies) - Long.bitCount(replies & CORNERS) + Long.bitCount(safe)) * 16
+                        - potential;
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Alpha-beta search depth moves deep for ordering moves. The leaves are scored by mobility, with moves on a corner
+    // counting twice, by corners and by how many of the opponent's tokens are next to empty squares, which is mobility
+    // still to come. Games that end are scored far above any of that.
+    private static int sortScore(long p, long o, int depth, int alpha, int beta) {
+        var moves = BitBoard.moves(p, o);
+        if (depth == 0) {
+            var replies = BitBoard.moves(o, p);
+            var frontier = BitBoard.neighbours(~(p | o));
+            return 16 * (Long.bitCount(moves) + Long.bitCount(moves & CORNERS) - Long.bitCount(replies)
+                    - Long.bitCount(replies & CORNERS))
+                    + 32 * (Long.bitCount(p & CORNERS) - Long.bitCount(o & CORNERS))
+                    + 2 * (Long.bitCount(frontier & o) - Long.bitCount(frontier & p));
+        }
+        if (moves == 0) {
+            if (BitBoard.moves(o, p) == 0) {
+                return 1000 * (Long.bitCount(p) - Long.bitCount(o));
+            }
+            return -sortScore(o, p, depth, -beta, -alpha);
+        }
+        var best = -SORT_INFINITY;
+        for (; moves != 0; moves &= moves - 1) {
+            var sq = Long.numberOfTrailingZeros(moves);
+            var flips = BitBoard.flips(p, o, sq);
+            var v = -sortScore(o & ~flips, p | flips | 1L << sq, depth - 1, -beta, -Math.max(alpha, best));
+            if (v > best) {
+                best = v;
+                if (best >= beta) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Moves the highest scoring of the moves from i on to i.
+    private static void pick(int[] moves, int[] scores, long[] flipList, int i, int n) {
+        var best = i;
+        for (int j = i + 1; j < n; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        var move = moves[best];
+        var score = scores[best];
+        var flips = flipList[best];
+        moves[best] = moves[i];
+        scores[best] = scores[i];
+        flipList[best] = flipList[i];
+        moves[i] = move;
+        scores[i] = score;
+        flipList[i] = flips;
+    }
+
+    // The last empty square. p + o = 63 tokens, so the final score follows from the number of tokens turned.
+    private int last1(long p, long o, int sq) {
+        nodes++;
+        var diff = Long.bitCount(p) - Long.bitCount(o);
+        var flips = BitBoard.flips(p, o, sq);
+        if (flips != 0) {
+            return diff + 1 + 2 * Long.bitCount(flips);
+        }
+        flips = BitBoard.flips(o, p, sq);
+        if (flips != 0) {
+            return diff - 1 - 2 * Long.bitCount(flips);
+        }
+        return diff;
+    }
+
+    // The last two empty squares. Both are tried directly, without generating a move mask.
+    private int last2(long p, long o, int alpha, int beta, int a, int b, boolean passed) {
+        nodes++;
+        var best = -INFINITY;
+        var flips = BitBoard.flips(p, o, a);
+        if (flips != 0) {
+            best = -last1(o & ~flips, p | flips | 1L << a, b);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        flips = BitBoard.flips(p, o, b);
+        if (flips != 0) {
+            best = Math.max(best, -last1(o & ~flips, p | flips | 1L << b, a));
+        }
+
+        if (best == -INFINITY) {
+            if (passed) {
+                return Long.bitCount(p) - Long.bitCount(o);
+            }
+            return -last2(o, p, -beta, -alpha, a, b, true);
+        }
+        return best;
+    }
+
+    // The last three empty squares. If two of them share a quadrant, the third is tried first, by parity.
+    private int last3(long p, long o, int alpha, int beta, int a, int b, int c, boolean passed) {
+        nodes++;
+        if (quadrant(a) == quadrant(b)) {
+            var t = c;
+            c = b;
+            b = a;
+            a = t;
+        } else if (quadrant(a) == quadrant(c)) {
+            var t = b;
+            b = a;
+            a = t;
+        }
+
+        var best = -INFINITY;
+        var flips = BitBoard.flips(p, o, a);
+        if (flips != 0) {
+            best = -last2(o & ~flips, p | flips | 1L << a, -beta, -alpha, b, c, false);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        flips = BitBoard.flips(p, o, b);
+        if (flips != 0) {
+            best = Math.max(best, -last2(o & ~flips, p | flips | 1L << b, -beta, -Math.max(alpha, best), a, c, false));
+            if (best >= beta) {
+                return best;
+            }
+        }
+        flips = BitBoard.flips(p, o, c);
+        if (flips != 0) {
+            best = Math.max(best, -last2(o & ~flips, p | flips | 1L << c, -beta, -Math.max(alpha, best), a, b, false));
+        }
+
+        if (best == -INFINITY) {
+            if (passed) {
+                return Long.bitCount(p) - Long.bitCount(o);
+            }
+            return -last3(o, p, -beta, -alpha, a, b, c, true);
+        }
+        return best;
+    }
+
+    // Returns a mask of tokens of p that can never be turned. A token is stable if, in each of the four directions, its
+    // line is full, or it is next to the edge or to a stable token of p on one side. This misses some stable tokens,
+    // but never counts one that is not.
+    static long stable(long p, long o) {
+        var occupied = p | o;
+        // Directions in which a token cannot be turned whatever its neighbours are.
+        var vertical = ROW_EDGES | fullColumns(occupied);
+        var horizontal = COL_EDGES | fullRows(occupied);
+        var diagonal9 = ROW_EDGES | COL_EDGES | full(occupied, DIAGONALS_9);
+        var diagonal7 = ROW_EDGES | COL_EDGES | full(occupied, DIAGONALS_7);
+
+        var stable = 0L;
+        while (true) {
+            var next = p
+                    & (vertical | (stable << 1) & BitBoard.NOT_ROW_0 | (stable >>> 1) & BitBoard.NOT_ROW_7)
+                    & (horizontal | stable << 8 | stable >>> 8)
+                    & (diagonal9 | (stable << 9) & BitBoard.NOT_ROW_0 | (stable >>> 9) & BitBoard.NOT_ROW_7)
+                    & (diagonal7 | (stable << 7) & BitBoard.NOT_ROW_7 | (stable >>> 7) & BitBoard.NOT_ROW_0);
+            if (next == stable) {
+                return stable;
+            }
+            stable = next;
+        }
+    }
+
+    // The squares of the columns that have no empty square. A column is a byte of the mask.
+    private static long fullColumns(long occupied) {
+        var full = 0L;
+        for (int col = 0; col < 8; col++) {
+            if ((occupied >>> (col * 8) & 0xFF) == 0xFF) {
+                full |= 0xFFL << (col * 8);
+            }
+        }
+        return full;
+    }
+
+    // The squares of the rows that have no empty square. A row is the same bit of each byte.
+    private static long fullRows(long occupied) {
+        var rows = occupied & occupied >>> 32;
+        rows &= rows >>> 16;
+        rows &= rows >>> 8;
+        return (rows & 0xFF) * 0x0101010101010101L;
+    }
+
+    private static long full(long occupied, long[] lines) {
+        var full = 0L;
+        for (var line : lines) {
+            if ((occupied & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+
+    // The diagonals along which the row goes up (1) or down (-1) by one for each column.
+    private static long[] diagonals(int step) {
+        var diagonals = new long[15];
+        for (int col = 0; col < 8; col++) {
+            for (int row = 0; row < 8; row++) {
+                diagonals[step > 0 ? row - col + 7 : row + col] |= 1L << BitBoard.square(col, row);
+            }
+        }
+        return diagonals;
+    }
+
+    // The quadrant of a square as a bit: bit 0 is the quadrant with col < 4 and row < 4, and so on.
+    private static int quadrant(int sq) {
+        return 1 << ((sq >>> 5) << 1 | (sq >>> 2 & 1));
+    }
+
+    // Bit q is set if quadrant q has an odd number of empty squares.
+    private static int parity(long empties) {
+        var parity = 0;
+        for (var e = empties; e != 0; e &= e - 1) {
+            parity ^= quadrant(Long.numberOfTrailingZeros(e));
+        }
+        return parity;
+    }
+
+    private static long key(long p, long o) {
+        var h = p * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(o * 0xC2B2AE3D27D4EB4FL, 31);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,153 @@
+import javax.swing.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a game of Othello shown in an OthelloGUI. The game state is only read and changed on the Swing event thread,
+ * which is where human moves arrive from the GUI's mouse listener. The AIs decide their moves on a background thread
+ * with their own copy of the state, so the window stays responsive while they think, and their moves are handed back
+ * to the event thread to be played. Nothing runs while waiting for the human.
+ */
+public class GameController {
+    private final OthelloGUI gui;
+    private final GameState state;
+    private final IOthelloAI[] ais;     // The AI of each player, or null for the human
+    private final boolean humanPlayer;
+    // Runs decideMove. Its thread is a daemon, so an AI that is still thinking does not keep the program alive.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "Othello AI");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean thinking;   // Whether an AI is deciding its move
+    private boolean finished;   // Whether neither player can move
+    private boolean stopped;    // Whether the game was stopped because an AI failed
+
+    /**
+     * @param gui         The GUI to show the game in.
+     * @param ai1         The AI for player 1 (black), or null if it is the human.
+     * @param ai2         The AI for player 2 (white).
+     * @param size        The number of rows and columns of the game board.
+     * @param humanPlayer true if player 1 is a human.
+     */
+    public GameController(OthelloGUI gui, IOthelloAI ai1, IOthelloAI ai2, int size, boolean humanPlayer) {
+        this.gui = gui;
+        this.state = new GameState(size, 1); // Player 1 (human if there is any) goes first
+        this.ais = new IOthelloAI[]{humanPlayer ? null : ai1, ai2};
+        this.humanPlayer = humanPlayer;
+    }
+
+    /**
+     * Starts the game. Must be called on the event thread.
+     */
+    public void start() {
+        next();
+    }
+
+    /**
+     * Returns the state of the game. It must only be used on the event thread, and not changed.
+     */
+    public GameState getState() {
+        return state;
+    }
+
+    /**
+     * Returns whether the game is over, i.e. neither player can move.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns whether the game is waiting for the human to click a position.
+     */
+    public boolean isHumanTurn() {
+        return humanPlayer && !finished && !stopped && !thinking && state.getPlayerInTurn() == 1;
+    }
+
+    /**
+     * Plays the position the human clicked, if it is their turn. Must be called on the event thread.
+     */
+    public void humanMove(Position place) {
+        if (isHumanTurn()) {
+            play(place);
+        }
+    }
+
+    // Asks the AI in turn for its move, unless it is the human's turn or the game is over.
+    private void next() {
+        if (finished || stopped) {
+            return;
+        }
+        var player = state.getPlayerInTurn();
+        var ai = ais[player - 1];
+        if (ai == null) {
+            return;
+        }
+
+        thinking = true;
+        var copy = new GameState(state.getBoard(), player);
+        executor.execute(() -> {
+            try {
+                var place = ai.decideMove(copy);
+                SwingUtilities.invokeLater(() -> {
+                    thinking = false;
+                    play(place);
+                });
+            } catch (Throwable e) {
+                // Errors as well, such as a StackOverflowError, or the game would wait for the AI forever.
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    thinking = false;
+                    stopped = true;
+                    closeAIs();
+                    gui.aiFailed(player, e);
+                });
+            }
+        });
+    }
+
+    // Stops the threads of the AIs that have any, such as a search pondering on the opponent's time, once the game is
+    // over. It runs on the executor, so it cannot overlap with decideMove.
+    private void closeAIs() {
+        executor.execute(() -> {
+            for (var ai : ais) {
+                if (ai instanceof AutoCloseable closeable) {
+                    try {
+                        closeable.close();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    // Plays a move for the player in turn, and passes the turn on if the next player cannot move.
+    private void play(Position place) {
+        var currentPlayer = state.getPlayerInTurn();
+        if (place == null || !state.insertToken(place)) {
+            // The human can try again, but an AI would most likely make the same move again.
+            if (ais[currentPlayer - 1] != null) {
+                stopped = true;
+                closeAIs();
+            }
+            gui.illegalMoveAttempted(place, currentPlayer, ais[currentPlayer - 1] == null);
+            return;
+        }
+
+        if (state.legalMoves().isEmpty()) { // The next player cannot move
+            state.changePlayer();
+            if (state.legalMoves().isEmpty()) {
+                finished = true;
+                closeAIs();
+            } else if (humanPlayer) { // If there is a human involved, (s)he needs to know this
+                gui.stateChanged();
+                String message = currentPlayer == 1 ? "Your opponent has no legal moves. It is your turn again."
+                                                     : "You have no legal moves. Your opponent will make another move.";
+                JOptionPane.showMessageDialog(gui, message);
+            }
+        }
+        gui.stateChanged();
+        next();
+    }
+}
@@ -10,6 +10,9 @@ public class GameState {
 	private int[][] board; 		// Possible values: 0 (empty), 1 (black), 2 (white)
 	private int currentPlayer; 	// The player who is next to put a token on the board. Value is 1 or 2.
 	private int size;  			// The number of columns = the number of rows on the board
+	private boolean[][] frontier;	// Whether a position is empty and next to a token, i.e. where a legal move can be
+	private ArrayList<Position> blackMoves;	// The legal moves of player 1, or null if they must be found again
+	private ArrayList<Position> whiteMoves;	// The legal moves of player 2, or null if they must be found again
 	
 	//************ Constructors ****************//
 	/**
@@ -29,6 +32,7 @@ public class GameState {
         board[half+1][half+1] = 1;
         board[half][half+1] = 2;
         board[half+1][half] = 2;   
+        initFrontier();
 	}
 	
 	/**
@@ -47,11 +51,40 @@ public class GameState {
 			}
 		}
 		this.currentPlayer = playerToTakeTurn;
+		initFrontier();
+	}
+	
+	/**
+	 * Finds the frontier of the board from scratch. Afterwards it is kept up to date by insertToken.
+	 */
+	private void initFrontier(){
+		frontier = new boolean[size][size];
+		for (int i = 0; i < size; i++){
+			for (int j = 0; j < size; j++){
+				if ( board[i][j] != 0 )
+					addNeighboursToFrontier(i, j);
+			}
+		}
+	}
+	
+	/**
+	 * Adds the empty positions around the given position to the frontier.
+	 */
+	private void addNeighboursToFrontier(int col, int row){
+		for (int deltaX = -1; deltaX <= 1; deltaX++){
+			for (int deltaY = -1; deltaY <= 1; deltaY++){
+				int c = col+deltaX;
+				int r = row+deltaY;
+				if ( 0 <= c && c < size && 0 <= r && r < size && board[c][r] == 0 )
+					frontier[c][r] = true;
+			}
+		}
 	}
 	
 	//************ Getter methods *******************//
 	/**
-	 * Returns the array representing the board of this game state
+	 * Returns the array representing the board of this game state.
+	 * The array should not be changed, as the legal moves are cached based on it.
 	 */
 	public int[][] getBoard(){
 		return board;
@@ -77,11 +110,11 @@ public class GameState {
 	 * and false otherwise.
 	 */
 	public boolean isFinished(){
-		if ( !legalMoves().isEmpty() )
+		if ( !cachedLegalMoves().isEmpty() )
 			return false;
 		else{ //current player has no legal moves
 			changePlayer();
-			if ( legalMoves().isEmpty() ) //next player also has no legal moves
+			if ( cachedLegalMoves().isEmpty() ) //next player also has no legal moves
 				return true;
 			else{
 				changePlayer();
@@ -135,6 +168,10 @@ public class GameState {
     	if ( capturesFound ){
     		// Place the token at the given place
     		board[place.col][place.row] = currentPlayer;
+    		frontier[place.col][place.row] = false;
+    		addNeighboursToFrontier(place.col, place.row);
+    		blackMoves = null;
+    		whiteMoves = null;
     		this.changePlayer();
     		return true;
     	}
@@ -145,27 +182,58 @@ public class GameState {
 
     /**
      * Returns a list of all the positions on the board that constitutes a legal move for the current player.
+     * Each position is in the list once. The list is a copy, so changing it does not affect the game state.
      */
     public ArrayList<Position> legalMoves(){
-    	ArrayList<Position> posPlaces = new ArrayList<Position>();
+    	return new ArrayList<Position>(cachedLegalMoves());
+    }
+    
+    /**
+     * Returns the legal moves of the current player. They are only found once per player after each move, since
+     * changing player does not change which moves each player has.
+     */
+    private ArrayList<Position> cachedLegalMoves(){
+    	if ( currentPlayer == 1 ){
+    		if ( blackMoves == null )
+    			blackMoves = findLegalMoves();
+    		return blackMoves;
+    	}
+    	else {
+    		if ( whiteMoves == null )
+    			whiteMoves = findLegalMoves();
+    		return whiteMoves;
+    	}
+    }
+    
+    /**
+     * Finds the legal moves of the current player. Only positions in the frontier can be legal, and each of them
+     * is added as soon as a capturing direction is found.
+     */
+    private ArrayList<Position> findLegalMoves(){
+    	ArrayList<Position> legalPlaces = new ArrayList<Position>();
     	for (int i = 0; i < this.size; i++){
     		for (int j = 0; j < this.size; j++){
-    			if ( board[i][j] == 0 ){
-    				posPlaces.add(new Position(i,j));
+    			if ( frontier[i][j] ){
+    				Position p = new Position(i,j);
+    				if ( isLegal(p) )
+    					legalPlaces.add(p);
     			}
     		}
     	}
-    	ArrayList<Position> legalPlaces = new ArrayList<Position>();
-    	for (Position p: posPlaces){
-    		for (int deltaX = -1; deltaX <= 1; deltaX++){
-    			for (int deltaY = -1; deltaY <= 1; deltaY++){
-    				if ( captureInDirection(p, deltaX, deltaY) > 0 ){
-    	    			legalPlaces.add(p);
-    				}
-    			}
+    	return legalPlaces;
+    }
+    
+    /**
+     * Returns whether the current player can capture anything by putting a token at the given empty position.
+     */
+    private boolean isLegal(Position p){
+    	for (int deltaX = -1; deltaX <= 1; deltaX++){
+    		for (int deltaY = -1; deltaY <= 1; deltaY++){
+    			if ( captureInDirection(p, deltaX, deltaY) > 0 )
+    				return true;
     		}
     	}
-    	return legalPlaces;
+    	return false;
     }	
     
     /**
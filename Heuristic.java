@@ -0,0 +1,49 @@
+class Heuristic {
+    public static int moves(BetterGameState s) {
+        // Get as few moves for the opponent as possible
+
+        return -s.mobility(s.getPlayerInTurn() == 1 ? 2 : 1);
+    }
+
+    public static int tokens(BetterGameState s, int player) {
+        // Get as many tokens as possible.
+
+        var opponent = player == 1 ? 2 : 1;
+        var playerTokens = s.countTokens(player);
+        var opponentTokens = s.countTokens(opponent);
+
+        return (int)((playerTokens - opponentTokens) / (playerTokens + opponentTokens + .0) * 100);
+    }
+
+    public static int corners(BetterGameState s, int player) {
+        // Get as many corners as possible.
+
+        var opponent = player == 1 ? 2 : 1;
+        var playerValue = cornerValue(s, player);
+        var opponentValue = cornerValue(s, opponent);
+
+        return playerValue + opponentValue != 0 ? 10 * (playerValue - opponentValue) / (playerValue + opponentValue) : 0;
+    }
+
+    public static int patterns(BitBoardGameState s, int player) {
+        // Look up every pattern on the board in the weight tables of the current phase of the game.
+
+        var score = Patterns.weights().evaluate(s.patterns(), s.countTokens(1) + s.countTokens(2));
+        return player == 1 ? score : -score;
+    }
+
+    // Calculate the number of corners the given player currently has, and how many they can gain in the next move.
+    static int cornerValue(BetterGameState s, int player) {
+        var capturedCorners = s.corners(player);
+
+        var size = s.getSize();
+        var last = size - 1;
+        var potentialCorners = 0;
+        if (s.isLegal(0)) potentialCorners++;
+        if (s.isLegal(last)) potentialCorners++;
+        if (s.isLegal(last * size)) potentialCorners++;
+        if (s.isLegal(last * size + last)) potentialCorners++;
+
+        return capturedCorners + potentialCorners;
+    }
+}
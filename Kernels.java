@@ -0,0 +1,64 @@
+/**
+ * The operations on many squares at once that the evaluation of an 8x8 board is made of: the mobility mask of the
+ * bitboards and the sum of the pattern weights. This class does them with scalar code. VectorKernels does them with the
+ * incubating Vector API, but is only used with -Dothello.vector=true, and only if it was compiled (it is in the vector
+ * directory, see there) and the program was run with --add-modules jdk.incubator.vector. Otherwise this class is used,
+ * so the rest of the engine does not depend on the module.
+ * <p>
+ * The kernels are chosen once, when the class is loaded, so the JIT can inline them.
+ */
+class Kernels {
+    static final Kernels INSTANCE = load();
+
+    /**
+     * Returns the mask of legal moves for the player owning p against the player owning o, like BitBoard.moves.
+     */
+    long moves(long p, long o) {
+        return BitBoard.moves(p, o);
+    }
+
+    /**
+     * Returns the sum of the weights at the given indices.
+     */
+    int sum(int[] weights, int[] indices) {
+        var sum = 0;
+        for (var index : indices) {
+            sum += weights[index];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the vector kernels, or null if the Vector API is not available or the machine has no 256 bit vectors.
+     */
+    static Kernels vector() {
+        Class<? extends Kernels> type;
+        try {
+            // By name, so this class can be compiled and loaded without the module.
+            type = Class.forName("VectorKernels").asSubclass(Kernels.class);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        try {
+            var available = type.getDeclaredMethod("available");
+            if (!(boolean) available.invoke(null)) {
+                return null;
+            }
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Kernels load() {
+        if (!Boolean.getBoolean("othello.vector")) {
+            return new Kernels();
+        }
+        var vector = vector();
+        if (vector == null) {
+            System.err.println("No vector kernels for this machine, evaluating with scalar code");
+            return new Kernels();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,450 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI that chooses its move by Monte Carlo Tree Search with UCT: it plays random games from the position, and grows a
+ * tree of the positions it has visited in which the moves that won the most get played most. It needs no heuristic, so
+ * it plays the same on boards of any size, where the weights of the heuristics of BaseAI were not tuned.
+ * <p>
+ * The nodes of the tree are kept in primitive arrays indexed by node, see Tree, so growing the tree allocates no
+ * objects. Several threads can search the same tree. A thread counts its visit of a node on the way down, before it
+ * knows the result, so until then the node looks like a loss to the other threads and they try something else (virtual
+ * loss). The subtree of the position the game reaches is kept for the next call to decideMove.
+ */
+class MonteCarloAI implements IOthelloAI, AutoCloseable {
+    // Time in milliseconds to search for each move. Can be set with -Dothello.time.
+    public long timeBudget() {
+        return Long.getLong("othello.time", 5000);
+    }
+
+    // Number of threads to search with. Can be set with -Dothello.threads.
+    public int threads() {
+        return Integer.getInteger("othello.threads", 1);
+    }
+
+    // How much UCT favours moves that were tried less over moves that won more. Can be set with -Dothello.mcts.c.
+    public double exploration() {
+        return Double.parseDouble(System.getProperty("othello.mcts.c", "1.0"));
+    }
+
+    // The largest number of nodes the tree can have. When it is full, the search goes on without growing it. Can be set
+    // with -Dothello.mcts.nodes.
+    public int treeSize() {
+        return Integer.getInteger("othello.mcts.nodes", 1 << 20);
+    }
+
+    private static final int PASS = -1;
+
+    /**
+     * The nodes of a search tree. The children of a node are consecutive, so a node only has to know its first child
+     * and how many there are. Node 0 is the root.
+     */
+    static final class Tree {
+        // Values of count for nodes whose children have not been added yet, and for nodes a thread is adding them to.
+        static final int UNEXPANDED = -1;
+        static final int EXPANDING = -2;
+        private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+        final int[] move;       // The square played to get to the node, or PASS
+        final int[] first;      // The first child
+        final int[] count;      // The number of children, 0 if the game is over, or UNEXPANDED or EXPANDING
+        final int[] visits;
+        final int[] score;      // Points for the player who made the move: 2 for a win and 1 for a draw
+        private final AtomicInteger size = new AtomicInteger();
+        private volatile boolean full;
+
+        Tree(int capacity) {
+            move = new int[capacity];
+            first = new int[capacity];
+            count = new int[capacity];
+            visits = new int[capacity];
+            score = new int[capacity];
+        }
+
+        int capacity() {
+            return move.length;
+        }
+
+        int size() {
+            return Math.min(size.get(), capacity());
+        }
+
+        // Empties the tree and adds a root.
+        void clear() {
+            size.set(1);
+            full = false;
+            init(0, PASS);
+        }
+
+        private void init(int node, int m) {
+            move[node] = m;
+            first[node] = 0;
+            count[node] = UNEXPANDED;
+            visits[node] = 0;
+            score[node] = 0;
+        }
+
+        // The number of children of the node, as seen after they were added by another thread.
+        int children(int node) {
+            return (int) INTS.getAcquire(count, node);
+        }
+
+        // Claims the node for adding its children. Only one thread gets it.
+        boolean claim(int node) {
+            return INTS.compareAndSet(count, node, UNEXPANDED, EXPANDING);
+        }
+
+        // Adds children with the given moves to a node claimed by this thread. Returns false if the tree is full, in
+        // which case the node is left unexpanded.
+        boolean expand(int node, int[] moves, int n) {
+            var at = full ? -1 : size.getAndAdd(n);
+            if (at < 0 || at + n > capacity()) {
+                full = true;
+                INTS.setRelease(count, node, UNEXPANDED);
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                init(at + i, moves[i]);
+            }
+            first[node] = at;
+            INTS.setRelease(count, node, n);
+            return true;
+        }
+
+        void visit(int node) {
+            INTS.getAndAdd(visits, node, 1);
+        }
+
+        void addScore(int node, int points) {
+            INTS.getAndAdd(score, node, points);
+        }
+
+        // Copies the subtree of the given node of another tree into this one, with the node as the root.
+        void copy(Tree from, int root) {
+            size.set(1);
+            full = false;
+            copyNode(from, root, 0);
+            // Breadth first, so the children of each node stay consecutive.
+            var queue = new ArrayDeque<int[]>();
+            queue.add(new int[]{root, 0});
+            while (!queue.isEmpty()) {
+                var pair = queue.remove();
+                var n = from.count[pair[0]];
+                if (n <= 0) {
+                    continue;
+                }
+                var at = size.getAndAdd(n);
+                first[pair[1]] = at;
+                for (int i = 0; i < n; i++) {
+                    copyNode(from, from.first[pair[0]] + i, at + i);
+                    queue.add(new int[]{from.first[pair[0]] + i, at + i});
+                }
+            }
+        }
+
+        private void copyNode(Tree from, int source, int target) {
+            move[target] = from.move[source];
+            count[target] = from.count[source];
+            visits[target] = from.visits[source];
+            score[target] = from.score[source];
+        }
+    }
+
+    // Two trees, so the part of the last search that is still relevant can be copied from one to the other.
+    private Tree tree;
+    private Tree spare;
+    // The position at the root of the tree.
+    private BetterGameState rootState;
+    // Runs the helper searches. Created on first use.
+    private ExecutorService helpers;
+    private final Random random = Long.getLong("othello.seed") == null
+            ? new Random()
+            : new Random(Long.getLong("othello.seed"));
+    private double c;
+    private long playouts;
+    private int reused;
+
+    public Position decideMove(GameState s) {
+        var start = System.nanoTime();
+        var state = BetterGameState.of(s);
+        var size = state.getSize();
+        if (tree == null || tree.capacity() != treeSize()) {
+            tree = new Tree(treeSize());
+            spare = new Tree(treeSize());
+            rootState = null;
+        }
+        reuse(state);
+        reused = tree.visits[0];
+        rootState = state;
+        c = exploration();
+
+        var deadline = BaseAI.deadline(start, BaseAI.nanos(timeBudget()));
+        var threads = threads();
+        if (threads > 1 && helpers == null) {
+            helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+                var thread = new Thread(r, "MonteCarloAI helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        var futures = new ArrayList<Future<Long>>();
+        for (int i = 1; i < threads; i++) {
+            var seed = random.nextLong();
+            futures.add(helpers.submit(() -> search(deadline, seed)));
+        }
+        playouts = search(deadline, random.nextLong());
+        for (var future : futures) {
+            try {
+                playouts += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        // The most visited move is the one UCT trusted most, which is less noisy than the one that won most often.
+        var n = tree.count[0];
+        var best = -1;
+        for (int i = 0; i < n; i++) {
+            var child = tree.first[0] + i;
+            if (best < 0 || tree.visits[child] > tree.visits[best]) {
+                best = child;
+            }
+        }
+        if (best < 0 || tree.move[best] == PASS) {
+            return null;
+        }
+        return new Position(tree.move[best] / size, tree.move[best] % size);
+    }
+
+    /**
+     * Returns the number of random games played by the last call to decideMove.
+     */
+    long playouts() {
+        return playouts;
+    }
+
+    /**
+     * Returns how many visits of the root were kept from the search of the move before.
+     */
+    int reused() {
+        return reused;
+    }
+
+    /**
+     * Stops the threads this AI searches with, so they do not outlive the game. It must not be called during
+     * decideMove. The AI can still be used afterwards, and then starts new threads when it needs them.
+     */
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdown();
+            helpers = null;
+        }
+    }
+
+    // Makes the root of the tree the given position: if it is in the tree from the last search, normally a reply to the
+    // move we played, its subtree is kept, otherwise the tree is emptied.
+    private void reuse(BetterGameState state) {
+        var node = rootState == null || rootState.getSize() != state.getSize()
+                ? -1
+                : find(0, rootState, state.hash(), 2);
+        if (node < 0) {
+            tree.clear();
+            return;
+        }
+        spare.copy(tree, node);
+        var t = tree;
+        tree = spare;
+        spare = t;
+    }
+
+    // Finds the node with the given hash at most the given number of moves below the node with the given state.
+    private int find(int node, BetterGameState state, long hash, int moves) {
+        if (state.hash() == hash) {
+            return node;
+        }
+        var n = tree.count[node];
+        for (int i = 0; moves > 0 && i < n; i++) {
+            var child = tree.first[node] + i;
+            var next = state.copy();
+            play(next, tree.move[child]);
+            var found = find(child, next, hash, moves - 1);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    private static void play(BetterGameState s, int move) {
+        if (move == PASS) {
+            s.changePlayer();
+        } else {
+            s.insertToken(move);
+        }
+    }
+
+    // Plays random games from the root until the deadline. Returns the number of games.
+    private long search(long deadline, long seed) {
+        var random = new SplittableRandom(seed);
+        var size = rootState.getSize();
+        // The nodes on the path from the root, and the player who made the move to each.
+        var path = new int[2 * size * size + 2];
+        var players = new int[path.length];
+        var moves = new int[size * size];
+        var games = 0L;
+        // At least one game, so the root has children to choose from.
+        do {
+            var s = rootState.copy();
+            var node = 0;
+            var depth = 0;
+            path[0] = 0;
+            players[0] = s.getPlayerInTurn() == 1 ? 2 : 1;
+            tree.visit(0);
+
+            // Selection: follow the move with the best upper confidence bound down to a node that was not visited
+            // before, or whose children are not known yet.
+            var visited = true;
+            while (visited) {
+                var n = tree.children(node);
+                if (n == Tree.UNEXPANDED && tree.claim(node)) {
+                    n = expand(node, s, moves);
+                }
+                if (n <= 0) {
+                    break;
+                }
+                var child = select(node, n);
+                visited = tree.visits[child] > 0;
+                tree.visit(child);
+                path[++depth] = child;
+                players[depth] = s.getPlayerInTurn();
+                play(s, tree.move[child]);
+                node = child;
+            }
+
+            // Simulation, and backpropagation of the result to each node for the player who moved to it.
+            var winner = playout(s, moves, random);
+            for (int i = 0; i <= depth; i++) {
+                tree.addScore(path[i], winner == 0 ? 1 : winner == players[i] ? 2 : 0);
+            }
+            games++;
+        } while (System.nanoTime() < deadline);
+        return games;
+    }
+
+    // Adds the children of a node this thread has claimed: its moves, a pass if only the opponent can move, or none if
+    // the game is over. Returns their number, or UNEXPANDED if the tree is full.
+    private int expand(int node, BetterGameState s, int[] moves) {
+        var n = s.generateMoves(moves);
+        if (n == 0 && s.mobility(s.getPlayerInTurn() == 1 ? 2 : 1) > 0) {
+            moves[0] = PASS;
+            n = 1;
+        }
+        return tree.expand(node, moves, n) ? n : Tree.UNEXPANDED;
+    }
+
+    // UCT: the child with the highest average score plus a bonus for having been tried less than its siblings.
+    // Children that were never visited go first.
+    private int select(int node, int n) {
+        var first = tree.first[node];
+        var log = Math.log(tree.visits[node]);
+        var best = first;
+        var bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + n; child++) {
+            var visits = tree.visits[child];
+            if (visits == 0) {
+                return child;
+            }
+            var value = tree.score[child] / (2.0 * visits) + c * Math.sqrt(log / visits);
+            if (value > bestValue) {
+                best = child;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    // Plays random moves until the game is over, and returns the winner, or 0 for a draw. The state is changed.
+    private static int playout(BetterGameState s, int[] moves, SplittableRandom random) {
+        if (s instanceof BitBoardGameState bits) {
+            return playout(bits.player(), bits.opponent(), bits.getPlayerInTurn(), random);
+        }
+        // Generating all the moves on every turn is expensive on large boards, so instead the empty squares are tried in
+        // random order until one is a legal move, which picks each legal move with the same probability. Only when
+        // there is none are all of them checked.
+        var size = s.getSize();
+        var empty = moves;
+        var count = 0;
+        for (int sq = 0; sq < size * size; sq++) {
+            if (s.getToken(sq / size, sq % size) == 0) {
+                empty[count++] = sq;
+            }
+        }
+        var passed = false;
+        while (true) {
+            var move = -1;
+            for (var unchecked = count; unchecked > 0; unchecked--) {
+                var i = random.nextInt(unchecked);
+                var sq = empty[i];
+                if (s.isLegal(sq)) {
+                    move = sq;
+                    empty[i] = empty[--count];
+                    break;
+                }
+                empty[i] = empty[unchecked - 1];
+                empty[unchecked - 1] = sq;
+            }
+            if (move < 0) {
+                if (passed) {
+                    break;
+                }
+                s.changePlayer();
+                passed = true;
+                continue;
+            }
+            s.insertToken(move);
+            passed = false;
+        }
+        var black = s.countTokens(1);
+        var white = s.countTokens(2);
+        return black > white ? 1 : white > black ? 2 : 0;
+    }
+
+    // The same on bitboards, with p the tokens of the given player, who is in turn, and o those of the opponent.
+    private static int playout(long p, long o, int player, SplittableRandom random) {
+        var passed = false;
+        while (true) {
+            var moves = BitBoard.moves(p, o);
+            if (moves == 0) {
+                if (passed) {
+                    break;
+                }
+                passed = true;
+            } else {
+                for (var k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                var sq = Long.numberOfTrailingZeros(moves);
+                var flips = BitBoard.flips(p, o, sq);
+                var q = p | flips | 1L << sq;
+                p = o & ~flips;
+                o = q;
+                passed = false;
+                player = 3 - player;
+                continue;
+            }
+            var t = p;
+            p = o;
+            o = t;
+            player = 3 - player;
+        }
+        var mine = Long.bitCount(p);
+        var theirs = Long.bitCount(o);
+        return mine == theirs ? 0 : mine > theirs ? player : 3 - player;
+    }
+}
@@ -0,0 +1,173 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Opening book: the best move and its score for positions near the start of 8x8 games, in a sorted binary file that is
+ * memory mapped, so looking a position up does not read the whole file onto the heap.
+ * <p>
+ * Positions are stored by their canonical key, see Symmetry, so there is one entry for all positions that are the same
+ * up to rotation and reflection. The file starts with the magic number and the number of entries, followed by the
+ * entries sorted by key, compared as unsigned numbers. Each entry is:
+ * <pre>
+ * long  tokens of the player in turn, in the orientation of the key
+ * long  tokens of the opponent, in the orientation of the key
+ * short square of the best move in the orientation of the key, see BitBoard
+ * short score of the best move, from the point of view of the player in turn
+ * </pre>
+ * All numbers are big endian. A book is built by searching every position up to a number of moves into the game with
+ * OthelloAIBob:
+ * <pre>
+ * java OpeningBook othello.book 6 10
+ * </pre>
+ * builds a book of all positions up to 6 moves into the game, searched 10 moves deep.
+ */
+final class OpeningBook {
+    private static final int MAGIC = 0x4F424B32; // "OBK2"
+    private static final int HEADER = 8;
+    private static final int ENTRY = 20;
+
+    record Entry(Symmetry.Key key, int move, int score) {
+    }
+
+    private final ByteBuffer entries;
+    private final int count;
+
+    private OpeningBook(ByteBuffer entries, int count) {
+        this.entries = entries;
+        this.count = count;
+    }
+
+    static OpeningBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not an opening book");
+            }
+            var count = buffer.getInt(4);
+            if (count < 0 || buffer.limit() != HEADER + (long) count * ENTRY) {
+                throw new IOException("truncated");
+            }
+            return new OpeningBook(buffer, count);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the index of the entry with the given key, or -1 if it is not in the book.
+     */
+    int find(Symmetry.Key key) {
+        // Only absolute gets are used, so the buffer can be shared by several threads.
+        var low = 0;
+        var high = count - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var at = HEADER + mid * ENTRY;
+            var cmp = new Symmetry.Key(entries.getLong(at), entries.getLong(at + 8)).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int move(int i) {
+        return entries.getShort(HEADER + i * ENTRY + 16);
+    }
+
+    int score(int i) {
+        return entries.getShort(HEADER + i * ENTRY + 18);
+    }
+
+    /**
+     * Writes a book with the given entries, which need not be sorted. Their moves must be in the orientation of their
+     * keys. Scores outside the range of a short are clamped.
+     */
+    static void write(Path path, List<Entry> entries) throws IOException {
+        var sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(Entry::key));
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.size());
+            for (var entry : sorted) {
+                out.writeLong(entry.key().high());
+                out.writeLong(entry.key().low());
+                out.writeShort(entry.move());
+                out.writeShort(Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, entry.score())));
+            }
+        }
+    }
+
+    /**
+     * Builds a book. Arguments: file, number of moves into the game, search depth.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: java OpeningBook <file> <moves> <depth>");
+            System.exit(1);
+        }
+        var path = Path.of(args[0]);
+        var moves = Integer.parseInt(args[1]);
+        var depth = Integer.parseInt(args[2]);
+
+        var ai = new OthelloAIBob() {
+            @Override
+            public int maxDepth() {
+                return depth;
+            }
+
+            @Override
+            public long timeBudget() {
+                return Long.MAX_VALUE / 1_000_000;
+            }
+
+            @Override
+            public Path openingBook() {
+                return null;
+            }
+        };
+
+        // All positions at the same number of moves into the game have the same player in turn, so searching them
+        // together lets the AI keep its transposition table between them. Only one position of each symmetry class is
+        // searched and expanded, as the others lead to the same positions up to symmetry.
+        var entries = new ArrayList<Entry>();
+        var seen = new HashSet<Symmetry.Key>();
+        List<BitBoardGameState> level = List.of((BitBoardGameState) BetterGameState.of(new GameState(8, 1)));
+        var buffer = new int[64];
+        for (int ply = 0; ply <= moves && !level.isEmpty(); ply++) {
+            var next = new ArrayList<BitBoardGameState>();
+            for (var state : level) {
+                var move = ai.decideMove(new GameState(state.getBoard(), state.getPlayerInTurn()));
+                var sq = move.col * BitBoardGameState.SIZE + move.row;
+                var canonical = state.canonical();
+                entries.add(new Entry(canonical.key(), canonical.toCanonical(sq), ai.score()));
+
+                var n = state.generateMoves(buffer);
+                for (int i = 0; i < n; i++) {
+                    var child = (BitBoardGameState) state.copy();
+                    child.insertToken(buffer[i]);
+                    // Nobody can be out of moves this early in the game, but skip such positions just in case.
+                    if (child.mobility(child.getPlayerInTurn()) > 0
+                            && seen.add(child.canonical().key())) {
+                        next.add(child);
+                    }
+                }
+            }
+            System.err.println("Searched " + level.size() + " positions " + ply + " moves into the game");
+            level = ply < moves ? next : List.of();
+        }
+
+        write(path, entries);
+        System.err.println("Wrote " + entries.size() + " positions to " + path);
+    }
+}
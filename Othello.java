@@ -79,18 +79,19 @@ public class Othello
         
         try{
         	OthelloGUI g = new OthelloGUI(ai1, ai2, size, ai1 == null);
+        	int boardSize = size;
 
-        	// Setup of the frame containing the game
-        	JFrame f = new JFrame();
-        	f.setSize((size+2)*100,(size+2)*100);
-        	f.setTitle("Othello");
-        	f.setDefaultCloseOperation (JFrame.EXIT_ON_CLOSE);
-        	f.getContentPane().add(g);    
-        	f.setVisible(true);
-
-            while(true) {
-                g.mouseClicked(null);
-            }
+        	// Setup of the frame containing the game. From here on the game is driven by Swing events and the 
+        	// AI thread of the game controller, so the main thread is done.
+        	SwingUtilities.invokeLater(() -> {
+        		JFrame f = new JFrame();
+        		f.setSize((boardSize+2)*100,(boardSize+2)*100);
+        		f.setTitle("Othello");
+        		f.setDefaultCloseOperation (JFrame.EXIT_ON_CLOSE);
+        		f.getContentPane().add(g);    
+        		f.setVisible(true);
+        		g.start();
+        	});
         }
         catch (IOException e){
         	errMsg = "Images not found at " + System.getProperty("user.dir") + "\\imgs";
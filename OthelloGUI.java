@@ -2,14 +2,15 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
 /**
  * GUI to show the Othello game and to listen for input for the user/human player. When it is the user's turn, 
- * (s)he clicks on the place where (s)he wants to place a token, and when it is the computer's turn, the 
- * player needs to click anywhere in the frame to make the computer take it's turn. The user is made aware
- * of any illegal moves, or when (s)he - or the computer - have to pass because no legal moves are possible.  
+ * (s)he clicks on the place where (s)he wants to place a token, and the computer takes its turn by itself,
+ * see GameController. The user is made aware of any illegal moves, or when (s)he - or the computer - have 
+ * to pass because no legal moves are possible.  
  * @author Mai Ajspur
  * @version 9.2.2018
  */
@@ -18,17 +19,21 @@ public class OthelloGUI extends JComponent implements MouseListener
     static final long 	serialVersionUID = 1234567890;
 	static final int 	imgSize = 100;
 	
-	private GameState state;		// The state of the game
+	private GameController controller;	// Runs the game
+	private GameState state;		// The state of the game, owned by the controller
     private int size;				// Number of rows and columns on the board
-    private boolean humanPlayer;	// Whether a human player is playing or not
-    private IOthelloAI ai1;			// The AI for player 1 if there are no human player
-    private IOthelloAI ai2;			// The AI for player 2 
 
     // Images for drawing the game board
     private Image 		part, blackPion, whitePion, background;
     private Image 		border_left, border_right, border_top, border_bottom;
     private Image 		corner_left_top, corner_left_bottom, corner_right_top, corner_right_bottom;
     private Image 		blackWon, whiteWon, tie;
+
+    // The board as it was last drawn: the borders and corners, which never change, and every cell. Moves only redraw
+    // the cells that changed. Created on the first paint, when the pixel format of the display is known.
+    private BufferedImage 	frame;
+    private Image[] 		cells;		// Each kind of cell (empty, black, white) with the grid on top
+    private int[][] 		drawn;		// The token of each cell as drawn in frame
 	
     /**
      * Initializes game
@@ -56,47 +61,52 @@ public class OthelloGUI extends JComponent implements MouseListener
     	tie = ImageIO.read(new File("imgs/tie.png"));
 		
     	this.size = size;
-    	this.state = new GameState(size, 1); // Player 1 (human if there is any) goes first
-    	this.humanPlayer = humanPlayer;
-    	if ( !humanPlayer )
-    		this.ai1 = ai1;
-    	this.ai2=ai2;
+    	this.controller = new GameController(this, ai1, ai2, size, humanPlayer);
+    	this.state = controller.getState();
+    	this.setDoubleBuffered(true);
     	this.addMouseListener(this);
     }
 
     /**
-     * Draws the current game board and shows if someone won.
+     * Starts the game. Must be called on the event thread once the GUI is shown.
      */
-    public void paint(Graphics g){
-		int[][] gameBoard = state.getBoard();
-    	this.setDoubleBuffered(true);
-    	Insets in = getInsets();               
-    	g.translate(in.left, in.top);            
+    public void start(){
+    	controller.start();
+    }
 
+    /**
+     * Called by the controller on the event thread when the state of the game has changed.
+     */
+    void stateChanged(){
+    	if ( frame == null ) // Not painted yet
+    		return;
+    	int[][] gameBoard = state.getBoard();
+    	Insets in = getInsets();
+    	Graphics g = frame.getGraphics();
     	for (int c = 0; c < size; c++){
     		for (int r = 0; r < size; r++){
-    			int player = gameBoard[c][r];
-    			if (player == 0) // background
-    				g.drawImage(background, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			else if (player == 2) // white = player2
-    				g.drawImage(whitePion, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			else // black = player1
-    				g.drawImage(blackPion, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			g.drawImage(part, imgSize+imgSize*c, imgSize+imgSize*r, this);
-    			if (c == 0){
-    				g.drawImage(border_left, 0, imgSize+imgSize*r, this); 
-    				g.drawImage(border_right, size*imgSize+imgSize, imgSize+imgSize*r, this); 
+    			if ( gameBoard[c][r] != drawn[c][r] ){
+    				drawCell(g, c, r, gameBoard[c][r]);
+    				repaint(in.left+imgSize+imgSize*c, in.top+imgSize+imgSize*r, imgSize, imgSize);
     			}
     		}
-    		g.drawImage(border_top, imgSize+imgSize*c, 0, this);
-    		g.drawImage(border_bottom, imgSize+imgSize*c, size*imgSize+imgSize, this);
     	}
-    	g.drawImage(corner_left_top, 0, 0, this);
-    	g.drawImage(corner_left_bottom, 0, size*imgSize+imgSize, this);
-    	g.drawImage(corner_right_top, imgSize+imgSize*size, 0, this);
-    	g.drawImage(corner_right_bottom, imgSize+imgSize*size, size*imgSize+imgSize, this);
+    	g.dispose();
+    	if ( controller.isFinished() )
+    		repaint();
+    }
+
+    /**
+     * Draws the current game board and shows if someone won.
+     */
+    public void paint(Graphics g){
+    	if ( frame == null )
+    		createFrame();
+    	Insets in = getInsets();               
+    	g.translate(in.left, in.top);            
+    	g.drawImage(frame, 0, 0, null);
 		
-    	if ( state.isFinished() ){
+    	if ( controller.isFinished() ){
     		int[] tokens = state.countTokens();
     		if ( tokens[0] > tokens[1] )
     			g.drawImage(blackWon, size*imgSize/2-(imgSize/2), size*imgSize/2+(imgSize/4), this);
@@ -107,52 +117,76 @@ public class OthelloGUI extends JComponent implements MouseListener
     	}		
     }
 
-    public void mouseClicked(MouseEvent e){
-    	int currentPlayer = state.getPlayerInTurn();
-    	if ( !state.isFinished() ){
-    		Position place = getPlaceForNextToken(e);
-    		if ( state.insertToken(place) ){ // Chosen move is legal
-				boolean nextPlayerCannotMove = state.legalMoves().isEmpty();
-   				if ( nextPlayerCannotMove ){ // The next player cannot move
-					repaint();
-   					state.changePlayer();
-   					if ( humanPlayer ){ // If there is a human involved, (s)he needs to know this
-   	  					boolean canMoveAfterwards = !state.legalMoves().isEmpty();
-   	   					if ( canMoveAfterwards ){
-   	   						String message = currentPlayer == 1 ? "Your opponent has no legal moves. It is your turn again." 
-   	   													 	    : "You have no legal moves. Your opponent will make another move (click again).";
-   	   						JOptionPane.showMessageDialog(this, message);
-   	   					}  						
-   					}
-   				}
- 			}
-   			else 
-   				illegalMoveAttempted(place); 		
-    		repaint();
+    /**
+     * Draws the borders, the corners and all the cells into a new frame.
+     */
+    private void createFrame(){
+    	frame = createCompatibleImage((size+2)*imgSize, (size+2)*imgSize);
+    	cells = new Image[3];
+    	Image[] tokens = {background, blackPion, whitePion};
+    	for (int player = 0; player < 3; player++){
+    		cells[player] = createCompatibleImage(imgSize, imgSize);
+    		Graphics g = cells[player].getGraphics();
+    		g.drawImage(tokens[player], 0, 0, null);
+    		g.drawImage(part, 0, 0, null);
+    		g.dispose();
     	}
+
+    	Graphics g = frame.getGraphics();
+    	for (int i = 0; i < size; i++){
+    		g.drawImage(border_left, 0, imgSize+imgSize*i, null); 
+    		g.drawImage(border_right, size*imgSize+imgSize, imgSize+imgSize*i, null); 
+    		g.drawImage(border_top, imgSize+imgSize*i, 0, null);
+    		g.drawImage(border_bottom, imgSize+imgSize*i, size*imgSize+imgSize, null);
+    	}
+    	g.drawImage(corner_left_top, 0, 0, null);
+    	g.drawImage(corner_left_bottom, 0, size*imgSize+imgSize, null);
+    	g.drawImage(corner_right_top, imgSize+imgSize*size, 0, null);
+    	g.drawImage(corner_right_bottom, imgSize+imgSize*size, size*imgSize+imgSize, null);
+
+    	int[][] gameBoard = state.getBoard();
+    	drawn = new int[size][size];
+    	for (int c = 0; c < size; c++){
+    		for (int r = 0; r < size; r++){
+    			drawCell(g, c, r, gameBoard[c][r]);
+    		}
+    	}
+    	g.dispose();
     }
-    
+
     /**
-     * Get a position to place the next token (i.e. read mouse click if human
-     * player is in turn, otherwise ask corresponding AI)
+     * Draws a cell into the frame and remembers what it shows.
      */
-    private Position getPlaceForNextToken(MouseEvent e){
-    	if ( state.getPlayerInTurn() == 2 ) 
-			return ai2.decideMove(state);
-		else {
-			if ( humanPlayer )
-				return humanSelectedPlace(e);
-			else
-				return ai1.decideMove(state);
-		}
+    private void drawCell(Graphics g, int c, int r, int player){
+    	g.drawImage(cells[player], imgSize+imgSize*c, imgSize+imgSize*r, null);
+    	drawn[c][r] = player;
+    }
+
+    /**
+     * Creates a transparent image in the pixel format of the display, so drawing it does not need a conversion.
+     */
+    private BufferedImage createCompatibleImage(int width, int height){
+    	GraphicsConfiguration gc = getGraphicsConfiguration();
+    	if ( gc == null && !GraphicsEnvironment.isHeadless() )
+    		gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    	if ( gc == null )
+    		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    	return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Plays the clicked position if it is the human's turn. The AIs move by themselves.
+     */
+    public void mouseClicked(MouseEvent e){
+    	if ( controller.isHumanTurn() )
+    		controller.humanMove(humanSelectedPlace(e));
     }
 
     /**
      * Display message for when an illegal move has been attempted 
      */
-    private void illegalMoveAttempted(Position place){
-    	int currentPlayer = state.getPlayerInTurn();
-    	if ( humanPlayer && currentPlayer == 1 )
+    void illegalMoveAttempted(Position place, int currentPlayer, boolean human){
+    	if ( human )
     		JOptionPane.showMessageDialog(this, "That is not a legal move (position " + place +"). Try again.");
 		else {
 			JOptionPane.showMessageDialog(this, "The AI for player "+ currentPlayer + 
@@ -161,6 +195,15 @@ public class OthelloGUI extends JComponent implements MouseListener
 		}
     }
     
+    /**
+     * Display message for when an AI has thrown an exception instead of choosing a move 
+     */
+    void aiFailed(int currentPlayer, Throwable e){
+    	JOptionPane.showMessageDialog(this, "The AI for player "+ currentPlayer + 
+    		(currentPlayer == 1 ? " (black)" : " (white)") + " threw " + e + ". Please debug!", 
+    		"AI Failed", JOptionPane.ERROR_MESSAGE);
+    }
+    
     /**
      * Translate the given clicks on the screen to a position on the game board
      */
@@ -0,0 +1,321 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Pattern evaluation in the style of Logistello, for 8x8 boards. A pattern is a fixed set of squares, and the contents
+ * of those squares, read as a number in base 3 (0 empty, 1 black, 2 white), index a table of weights. The board is
+ * covered by the symmetric images of each pattern, and the value of a position for black is the sum of the weights
+ * of all of them. There is a table for each phase of the game, as the same pattern is worth more or less depending on
+ * how far the game is.
+ * <p>
+ * Images of a pattern that cover the same squares, such as the edge read from either end, are one instance, which is
+ * read in one order only. The weights of the orders of such a pattern are therefore averaged when they are loaded, so
+ * weights that are not symmetric do not make the evaluation depend on how the board is turned.
+ * <p>
+ * BitBoardGameState keeps the index of every pattern instance up to date as moves are made, so evaluating a position
+ * only takes a table lookup per instance.
+ * <p>
+ * The weights are read from the file given by -Dothello.patterns, default "othello.patterns". The file starts with the
+ * magic number and the number of phases, followed by, for each phase and each pattern in the order of SHAPES, 3^n
+ * shorts for a pattern of n squares. All numbers are big endian. Without the file, the weights are derived from the
+ * square weights of BaseAI, which makes the evaluation a disc-square table. {@code java Patterns <file>} writes those
+ * weights, as a starting point for training.
+ */
+final class Patterns {
+    private static final int MAGIC = 0x4F505731; // "OPW1"
+
+    // One instance of each pattern, as (col, row) pairs. The order of the squares gives the order of the base 3 digits,
+    // the first square being the least significant.
+    static final int[][][] SHAPES = {
+            // Edge and the two X-squares next to it
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0}, {6, 0}, {7, 0}, {1, 1}, {6, 1}},
+            // 3x3 corner
+            {{0, 0}, {1, 0}, {2, 0}, {0, 1}, {1, 1}, {2, 1}, {0, 2}, {1, 2}, {2, 2}},
+            // 2x5 corner
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}},
+            // Diagonals of length 8 to 4
+            {{0, 0}, {1, 1}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {6, 6}, {7, 7}},
+            {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 7}},
+            {{0, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {5, 7}},
+            {{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}},
+            {{0, 4}, {1, 5}, {2, 6}, {3, 7}},
+    };
+
+    // The instances of the patterns on the board: the distinct images of the shapes under the 8 symmetries.
+    static final int INSTANCES;
+    private static final int[] INSTANCE_SHAPE;
+    private static final int[][] INSTANCE_SQUARES;
+    // Where the table of each shape starts in the weights of a phase, which has the tables of all shapes one after
+    // another, so the weight of an instance is a single array lookup.
+    private static final int[] SHAPE_OFFSET = new int[SHAPES.length + 1];
+    // For each square, the instances it is part of and the value of its digit in each.
+    private static final int[][] SQUARE_INSTANCES = new int[64][];
+    private static final int[][] SQUARE_POWERS = new int[64][];
+    // For each shape, the orders its squares can be read in by the symmetries that map it onto itself, including the
+    // identity: the value of each digit's place in that order.
+    private static final int[][][] SHAPE_ORDERS = new int[SHAPES.length][][];
+
+    static {
+        var shapes = new ArrayList<Integer>();
+        var instances = new ArrayList<int[]>();
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            var seen = new HashSet<Long>();
+            var orders = new ArrayList<int[]>();
+            // Symmetry 0 is the identity, so this is the shape itself.
+            int[] first = null;
+            var firstMask = 0L;
+            for (int symmetry = 0; symmetry < Symmetry.COUNT; symmetry++) {
+                var squares = new int[SHAPES[shape].length];
+                var mask = 0L;
+                for (int i = 0; i < squares.length; i++) {
+                    var sq = BitBoard.square(SHAPES[shape][i][0], SHAPES[shape][i][1]);
+                    squares[i] = Symmetry.square(sq, BitBoardGameState.SIZE, symmetry);
+                    mask |= 1L << squares[i];
+                }
+                if (first == null) {
+                    first = squares;
+                    firstMask = mask;
+                }
+                if (mask == firstMask) {
+                    var order = new int[squares.length];
+                    for (int i = 0; i < squares.length; i++) {
+                        order[i] = pow3(indexOf(first, squares[i]));
+                    }
+                    orders.add(order);
+                }
+                // Images covering the same squares are the same instance, read in another order. Only one of them is
+                // kept, which is right as the constructor makes the weights the same for every order.
+                if (seen.add(mask)) {
+                    shapes.add(shape);
+                    instances.add(squares);
+                }
+            }
+            SHAPE_ORDERS[shape] = orders.toArray(new int[0][]);
+        }
+        INSTANCES = instances.size();
+        INSTANCE_SHAPE = shapes.stream().mapToInt(Integer::intValue).toArray();
+        INSTANCE_SQUARES = instances.toArray(new int[0][]);
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            SHAPE_OFFSET[shape + 1] = SHAPE_OFFSET[shape] + pow3(SHAPES[shape].length);
+        }
+
+        var squareInstances = new ArrayList<List<Integer>>();
+        var squarePowers = new ArrayList<List<Integer>>();
+        for (int sq = 0; sq < 64; sq++) {
+            squareInstances.add(new ArrayList<>());
+            squarePowers.add(new ArrayList<>());
+        }
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            var power = 1;
+            for (var sq : INSTANCE_SQUARES[instance]) {
+                squareInstances.get(sq).add(instance);
+                squarePowers.get(sq).add(power);
+                power *= 3;
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            SQUARE_INSTANCES[sq] = squareInstances.get(sq).stream().mapToInt(Integer::intValue).toArray();
+            SQUARE_POWERS[sq] = squarePowers.get(sq).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static Patterns weights;
+
+    // Weights by phase and index, see SHAPE_OFFSET, from black's point of view.
+    private final int[][] tables;
+
+    // The weight of each index becomes the average of the weights of the indices that read the same squares in the
+    // other orders of SHAPE_ORDERS. Only one order of each instance is evaluated, so a table that is not symmetric
+    // would otherwise value a position differently from its mirror image.
+    private Patterns(short[][][] tables) {
+        this.tables = new int[tables.length][SHAPE_OFFSET[SHAPES.length]];
+        for (int phase = 0; phase < tables.length; phase++) {
+            for (int shape = 0; shape < SHAPES.length; shape++) {
+                var orders = SHAPE_ORDERS[shape];
+                for (int index = 0; index < tables[phase][shape].length; index++) {
+                    var sum = 0;
+                    for (var order : orders) {
+                        sum += tables[phase][shape][reorder(index, order)];
+                    }
+                    this.tables[phase][SHAPE_OFFSET[shape] + index] = Math.round((float) sum / orders.length);
+                }
+            }
+        }
+    }
+
+    // The index of the same contents read in the given order, see SHAPE_ORDERS.
+    private static int reorder(int index, int[] order) {
+        var reordered = 0;
+        for (var power : order) {
+            reordered += index % 3 * power;
+            index /= 3;
+        }
+        return reordered;
+    }
+
+    /**
+     * Returns the weights to evaluate with, reading them the first time.
+     */
+    static synchronized Patterns weights() {
+        if (weights == null) {
+            var path = Path.of(System.getProperty("othello.patterns", "othello.patterns"));
+            try {
+                weights = Files.exists(path) ? load(path) : new Patterns(new short[][][]{squareWeightTables()});
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Returns the index of every instance for the given board: the base 3 number of its squares, plus the offset of
+     * the table of its shape.
+     */
+    static int[] indices(long black, long white) {
+        var indices = new int[INSTANCES];
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            var squares = INSTANCE_SQUARES[instance];
+            var index = 0;
+            for (int i = squares.length - 1; i >= 0; i--) {
+                var bit = 1L << squares[i];
+                index = index * 3 + ((black & bit) != 0 ? 1 : (white & bit) != 0 ? 2 : 0);
+            }
+            indices[instance] = SHAPE_OFFSET[INSTANCE_SHAPE[instance]] + index;
+        }
+        return indices;
+    }
+
+    /**
+     * Updates the indices for player putting a token on sq and turning flips, or for taking that move back if sign
+     * is -1.
+     */
+    static void play(int[] indices, int sq, long flips, int player, int sign) {
+        var instances = SQUARE_INSTANCES[sq];
+        var powers = SQUARE_POWERS[sq];
+        for (int i = 0; i < instances.length; i++) {
+            indices[instances[i]] += sign * player * powers[i];
+        }
+        // A turned token goes from the opponent (3 - player) to player.
+        var turn = sign * (2 * player - 3);
+        for (; flips != 0; flips &= flips - 1) {
+            var flipped = Long.numberOfTrailingZeros(flips);
+            instances = SQUARE_INSTANCES[flipped];
+            powers = SQUARE_POWERS[flipped];
+            for (int i = 0; i < instances.length; i++) {
+                indices[instances[i]] += turn * powers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the value for black of a board with the given indices and number of tokens.
+     */
+    int evaluate(int[] indices, int tokens) {
+        return Kernels.INSTANCE.sum(phase(tokens), indices);
+    }
+
+    /**
+     * Returns the weights of the phase of the game with the given number of tokens, indexed like the indices.
+     */
+    int[] phase(int tokens) {
+        return tables[Math.min(tables.length - 1, (tokens - 4) * tables.length / 61)];
+    }
+
+    static Patterns load(Path path) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a pattern weight file");
+            }
+            var phases = in.readInt();
+            if (phases < 1 || phases > 61) {
+                throw new IOException(path + " has " + phases + " phases");
+            }
+            var tables = new short[phases][SHAPES.length][];
+            for (var phase : tables) {
+                for (int shape = 0; shape < SHAPES.length; shape++) {
+                    phase[shape] = new short[pow3(SHAPES[shape].length)];
+                    for (int index = 0; index < phase[shape].length; index++) {
+                        phase[shape][index] = in.readShort();
+                    }
+                }
+            }
+            return new Patterns(tables);
+        }
+    }
+
+    static void write(Path path, short[][][] tables) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(tables.length);
+            for (var phase : tables) {
+                for (var table : phase) {
+                    for (var weight : table) {
+                        out.writeShort(weight);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the weights derived from the square weights to the given file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java Patterns <file>");
+            System.exit(1);
+        }
+        write(Path.of(args[0]), new short[][][]{squareWeightTables()});
+    }
+
+    // Tables that add up to the square weights of BaseAI: each square's weight is split evenly between the instances
+    // that cover it.
+    private static short[][] squareWeightTables() {
+        var squareWeights = BaseAI.squareWeights(BitBoardGameState.SIZE);
+        var tables = new short[SHAPES.length][];
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            // Every image of the shape covers squares with the same weights and coverage, so the first one will do.
+            var squares = INSTANCE_SQUARES[firstInstance(shape)];
+            tables[shape] = new short[pow3(squares.length)];
+            for (int index = 0; index < tables[shape].length; index++) {
+                var weight = 0.0;
+                var digits = index;
+                for (var sq : squares) {
+                    var digit = digits % 3;
+                    digits /= 3;
+                    if (digit != 0) {
+                        weight += (digit == 1 ? 1 : -1) * squareWeights[sq] / (double) SQUARE_INSTANCES[sq].length;
+                    }
+                }
+                tables[shape][index] = (short) Math.round(weight);
+            }
+        }
+        return tables;
+    }
+
+    private static int firstInstance(int shape) {
+        for (int instance = 0; ; instance++) {
+            if (INSTANCE_SHAPE[instance] == shape) {
+                return instance;
+            }
+        }
+    }
+
+    private static int indexOf(int[] squares, int sq) {
+        for (int i = 0; ; i++) {
+            if (squares[i] == sq) {
+                return i;
+            }
+        }
+    }
+
+    private static int pow3(int n) {
+        var power = 1;
+        for (int i = 0; i < n; i++) {
+            power *= 3;
+        }
+        return power;
+    }
+}
@@ -0,0 +1,353 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth, to check that move generation agrees between the game
+ * state implementations and to measure how fast they are.
+ * <p>
+ * A pass counts as a move when the player in turn has no legal moves but the opponent has. A finished game counts as
+ * one leaf, however much depth is left.
+ * <pre>
+ * java Perft &lt;engine&gt; &lt;size&gt; &lt;depth&gt; [threads] [hash bits]
+ * </pre>
+ * counts from the start position of the given size with one of the engines:
+ * <ul>
+ * <li>gamestate: GameState, copying the state for every move.</li>
+ * <li>array: ArrayGameState, with makeMove and undoMove.</li>
+ * <li>bitboard: BitBoardGameState, with makeMove and undoMove (8x8 only).</li>
+ * <li>raw: the BitBoard functions on a pair of longs (8x8 only).</li>
+ * </ul>
+ * The moves at the root are split between the given number of threads (default 1). With hash bits, counts of subtrees
+ * are remembered in a table of 2^bits entries shared by the threads, so transpositions are only counted once. A start
+ * position other than the initial one can be given with -Dperft.board=..., a string of size * size characters 'X'
+ * (black), 'O' (white) and '-' (empty), column by column, and -Dperft.player=1 or 2.
+ */
+public class Perft {
+    // Subtree counts by position and depth. Like TranspositionTable, each entry stores the key XOR the data, so a torn
+    // write by another thread reads as a miss instead of a wrong count.
+    private static final class Table {
+        private final long[] keys;
+        private final long[] counts;
+        private final int mask;
+
+        Table(int bits) {
+            keys = new long[1 << bits];
+            counts = new long[1 << bits];
+            mask = (1 << bits) - 1;
+        }
+
+        // Returns the count for the key, or -1 if it is not in the table.
+        long probe(long key) {
+            var i = (int) key & mask;
+            var count = counts[i];
+            return (keys[i] ^ count) == key ? count : -1;
+        }
+
+        void store(long key, long count) {
+            var i = (int) key & mask;
+            keys[i] = key ^ count;
+            counts[i] = count;
+        }
+    }
+
+    // A game state that perft can count from.
+    private abstract static class Engine {
+        Table table;
+
+        // The legal moves of the player in turn.
+        abstract List<Position> moves();
+
+        // An independent engine for the state after the given move, or after a pass if it is null.
+        abstract Engine after(Position move);
+
+        abstract long count(int depth);
+
+        // Combines the hash of a position with the depth it is counted to.
+        static long key(long hash, int depth) {
+            return hash ^ Zobrist.mix(1000 + depth);
+        }
+    }
+
+    private static final class GameStateEngine extends Engine {
+        private final GameState state;
+
+        GameStateEngine(GameState state) {
+            this.state = state;
+        }
+
+        @Override
+        List<Position> moves() {
+            return state.legalMoves();
+        }
+
+        @Override
+        Engine after(Position move) {
+            var child = new GameState(state.getBoard(), state.getPlayerInTurn());
+            if (move == null) {
+                child.changePlayer();
+            } else {
+                child.insertToken(move);
+            }
+            return new GameStateEngine(child);
+        }
+
+        @Override
+        long count(int depth) {
+            return count(state, depth);
+        }
+
+        private long count(GameState s, int depth) {
+            if (depth == 0) {
+                return 1;
+            }
+            var key = 0L;
+            if (table != null) {
+                // GameState has no hash of its own, so the state is converted to find one.
+                key = key(BetterGameState.of(s).hash(), depth);
+                var count = table.probe(key);
+                if (count >= 0) {
+                    return count;
+                }
+            }
+
+            var count = 0L;
+            var moves = s.legalMoves();
+            if (moves.isEmpty()) {
+                var passed = new GameState(s.getBoard(), s.getPlayerInTurn());
+                passed.changePlayer();
+                count = passed.legalMoves().isEmpty() ? 1 : count(passed, depth - 1);
+            } else {
+                for (var move : moves) {
+                    var child = new GameState(s.getBoard(), s.getPlayerInTurn());
+                    child.insertToken(move);
+                    count += count(child, depth - 1);
+                }
+            }
+
+            if (table != null) {
+                table.store(key, count);
+            }
+            return count;
+        }
+    }
+
+    private static final class BetterGameStateEngine extends Engine {
+        private final BetterGameState state;
+        private int[][] moveLists;
+
+        BetterGameStateEngine(BetterGameState state) {
+            this.state = state;
+        }
+
+        @Override
+        List<Position> moves() {
+            var moves = new ArrayList<Position>();
+            state.legalMoves().forEachRemaining(moves::add);
+            return moves;
+        }
+
+        @Override
+        Engine after(Position move) {
+            var child = state.copy();
+            if (move == null) {
+                child.changePlayer();
+            } else {
+                child.insertToken(move);
+            }
+            return new BetterGameStateEngine(child);
+        }
+
+        @Override
+        long count(int depth) {
+            var squares = state.getSize() * state.getSize();
+            moveLists = new int[depth + 1][squares];
+            return count(depth, false);
+        }
+
+        private long count(int depth, boolean passed) {
+            if (depth == 0) {
+                return 1;
+            }
+            var key = 0L;
+            if (table != null) {
+                key = key(state.hash(), depth);
+                var count = table.probe(key);
+                if (count >= 0) {
+                    return count;
+                }
+            }
+
+            var count = 0L;
+            var moves = moveLists[depth];
+            var n = state.generateMoves(moves);
+            if (n == 0) {
+                if (passed) {
+                    count = 1;
+                } else {
+                    state.changePlayer();
+                    count = state.mobility(state.getPlayerInTurn()) == 0 ? 1 : count(depth - 1, true);
+                    state.changePlayer();
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    state.makeMove(moves[i]);
+                    count += count(depth - 1, false);
+                    state.undoMove();
+                }
+            }
+
+            if (table != null) {
+                table.store(key, count);
+            }
+            return count;
+        }
+    }
+
+    private static final class BitBoardEngine extends Engine {
+        private final long player;
+        private final long opponent;
+
+        BitBoardEngine(long player, long opponent) {
+            this.player = player;
+            this.opponent = opponent;
+        }
+
+        @Override
+        List<Position> moves() {
+            var moves = new ArrayList<Position>();
+            for (var m = BitBoard.moves(player, opponent); m != 0; m &= m - 1) {
+                var sq = Long.numberOfTrailingZeros(m);
+                moves.add(new Position(BitBoard.col(sq), BitBoard.row(sq)));
+            }
+            return moves;
+        }
+
+        @Override
+        Engine after(Position move) {
+            if (move == null) {
+                return new BitBoardEngine(opponent, player);
+            }
+            var sq = BitBoard.square(move.col, move.row);
+            var flips = BitBoard.flips(player, opponent, sq);
+            return new BitBoardEngine(opponent & ~flips, player | flips | 1L << sq);
+        }
+
+        @Override
+        long count(int depth) {
+            return count(player, opponent, depth);
+        }
+
+        private long count(long p, long o, int depth) {
+            var moves = BitBoard.moves(p, o);
+            if (depth == 1 && moves != 0) {
+                return Long.bitCount(moves);
+            }
+            if (depth == 0) {
+                return 1;
+            }
+            var key = 0L;
+            if (table != null) {
+                // The player in turn is always p, so positions with the colours swapped count the same.
+                key = key(Zobrist.mix(p) ^ Long.rotateLeft(Zobrist.mix(o), 17), depth);
+                var count = table.probe(key);
+                if (count >= 0) {
+                    return count;
+                }
+            }
+
+            var count = 0L;
+            if (moves == 0) {
+                count = BitBoard.moves(o, p) == 0 ? 1 : count(o, p, depth - 1);
+            } else {
+                for (; moves != 0; moves &= moves - 1) {
+                    var sq = Long.numberOfTrailingZeros(moves);
+                    var flips = BitBoard.flips(p, o, sq);
+                    count += count(o & ~flips, p | flips | 1L << sq, depth - 1);
+                }
+            }
+
+            if (table != null) {
+                table.store(key, count);
+            }
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: java Perft <gamestate|array|bitboard|raw> <size> <depth> [threads] [hash bits]");
+            System.exit(1);
+        }
+        var size = Integer.parseInt(args[1]);
+        var depth = Integer.parseInt(args[2]);
+        var threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        var table = args.length > 4 ? new Table(Integer.parseInt(args[4])) : null;
+        if (depth < 1) {
+            System.err.println("The depth must be at least 1");
+            System.exit(1);
+        }
+
+        var start = startPosition(size);
+        Engine root = switch (args[0]) {
+            case "gamestate" -> new GameStateEngine(start);
+            case "array" -> new BetterGameStateEngine(new ArrayGameState(start));
+            case "bitboard" -> new BetterGameStateEngine(new BitBoardGameState(checkBitBoard(start)));
+            case "raw" -> {
+                var s = new BitBoardGameState(checkBitBoard(start));
+                yield new BitBoardEngine(s.player(), s.opponent());
+            }
+            default -> throw new IllegalArgumentException("Unknown engine " + args[0]);
+        };
+
+        // Split the root: each move is counted as a task of its own.
+        var moves = new ArrayList<Position>(root.moves());
+        if (moves.isEmpty()) {
+            moves.add(null);
+        }
+        var pool = Executors.newFixedThreadPool(threads);
+        var time = System.nanoTime();
+        var futures = new ArrayList<Future<Long>>();
+        for (var move : moves) {
+            var child = root.after(move);
+            child.table = table;
+            futures.add(pool.submit(() -> child.count(depth - 1)));
+        }
+        var total = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            var count = futures.get(i).get();
+            total += count;
+            System.out.printf("%-10s %,d%n", moves.get(i) == null ? "pass" : moves.get(i), count);
+        }
+        time = System.nanoTime() - time;
+        pool.shutdown();
+
+        System.out.printf("%nDepth %d: %,d nodes in %.3f s, %,.0f nodes/s%n", depth, total, time / 1e9, total / (time / 1e9));
+    }
+
+    private static GameState startPosition(int size) {
+        var board = System.getProperty("perft.board");
+        if (board == null) {
+            return new GameState(size, Integer.getInteger("perft.player", 1));
+        }
+        if (board.length() != size * size) {
+            throw new IllegalArgumentException("perft.board must have " + size * size + " characters");
+        }
+        var cells = new int[size][size];
+        for (int i = 0; i < board.length(); i++) {
+            cells[i / size][i % size] = switch (board.charAt(i)) {
+                case 'X' -> 1;
+                case 'O' -> 2;
+                case '-' -> 0;
+                default -> throw new IllegalArgumentException("Unknown cell " + board.charAt(i));
+            };
+        }
+        return new GameState(cells, Integer.getInteger("perft.player", 1));
+    }
+
+    private static GameState checkBitBoard(GameState s) {
+        if (s.getBoard().length != BitBoardGameState.SIZE) {
+            throw new IllegalArgumentException("This engine only works on 8x8 boards");
+        }
+        return s;
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Multi-ProbCut parameters, see BaseAI.probCut(). For a search of some depth, the score of a shallow search of the same
+ * position predicts its score: deep = a * shallow + b, with an error of standard deviation sigma. Each depth can have
+ * several shallow depths, which are tried from the shallowest. The parameters depend on the heuristic, so each AI needs
+ * its own.
+ * <p>
+ * They are fitted from the scores of the iterations of ordinary searches, see SearchStats, as the iterations of one
+ * search give the scores of the same position at every depth. Only shallow depths of the same parity as the deep one are
+ * used, since the heuristics see a position differently depending on who moved last. The file is text, with one line
+ * per pair of depths and # starting a comment:
+ * <pre>
+ * # depth shallow a b sigma
+ * 8 2 1.02 -31.5 812.4
+ * </pre>
+ * Parameters are fitted with
+ * <pre>
+ * java ProbCut cmt.probcut CornersMovesTokens 8 200 10
+ * </pre>
+ * which searches 200 positions from random 8x8 games 10 moves deep with CornersMovesTokens and writes the parameters
+ * for depths 3 to 10 to cmt.probcut.
+ */
+final class ProbCut {
+    // The shallowest deep search that is worth cutting off with a shallow one.
+    private static final int MIN_DEPTH = 3;
+    private static final Parameters[] NONE = {};
+
+    record Parameters(int depth, int shallow, double a, double b, double sigma) {
+    }
+
+    // The parameters by deep depth, each sorted by shallow depth.
+    private final Parameters[][] byDepth;
+
+    private ProbCut(List<Parameters> parameters) {
+        var max = parameters.stream().mapToInt(Parameters::depth).max().orElse(0);
+        byDepth = new Parameters[max + 1][];
+        for (int depth = 0; depth <= max; depth++) {
+            var d = depth;
+            byDepth[depth] = parameters.stream()
+                    .filter(p -> p.depth() == d)
+                    .sorted(Comparator.comparingInt(Parameters::shallow))
+                    .toArray(Parameters[]::new);
+        }
+    }
+
+    /**
+     * Returns the parameters for a search of the given depth, from the shallowest shallow depth.
+     */
+    Parameters[] parameters(int depth) {
+        return depth < byDepth.length ? byDepth[depth] : NONE;
+    }
+
+    static ProbCut read(Path path) throws IOException {
+        var parameters = new ArrayList<Parameters>();
+        var lineNumber = 0;
+        for (var line : Files.readAllLines(path)) {
+            lineNumber++;
+            var comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            var fields = line.trim().split("\\s+");
+            try {
+                var p = new Parameters(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3]), Double.parseDouble(fields[4]));
+                // A slope of zero or less would make the shallow score say nothing, or the opposite, about the deep one.
+                if (fields.length != 5 || p.shallow() < 1 || p.shallow() >= p.depth() || p.a() <= 0 || p.sigma() < 0) {
+                    throw new IOException(path + ":" + lineNumber + ": invalid parameters");
+                }
+                parameters.add(p);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException(path + ":" + lineNumber + ": expected depth, shallow depth, a, b and sigma");
+            }
+        }
+        return new ProbCut(parameters);
+    }
+
+    static void write(Path path, List<Parameters> parameters) throws IOException {
+        try (var out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("# depth shallow a b sigma");
+            for (var p : parameters) {
+                out.printf(Locale.ROOT, "%d %d %.4f %.2f %.2f%n", p.depth(), p.shallow(), p.a(), p.b(), p.sigma());
+            }
+        }
+    }
+
+    /**
+     * Fits parameters. Arguments: file, AI class, board size, number of positions, depth.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.err.println("Usage: java ProbCut <file> <ai> <size> <positions> <depth>");
+            System.exit(1);
+        }
+        var path = Path.of(args[0]);
+        var size = Integer.parseInt(args[2]);
+        var positions = Integer.parseInt(args[3]);
+        var depth = Integer.parseInt(args[4]);
+
+        // The AI is created by name, so it is configured through the properties its hooks read by default: a plain
+        // full width search to the given depth.
+        System.setProperty("othello.depth", String.valueOf(depth));
+        System.setProperty("othello.time", String.valueOf(1_000_000_000L));
+        System.setProperty("othello.endgame", "0");
+        System.setProperty("othello.book", "");
+        System.setProperty("othello.ponder", "false");
+        System.setProperty("othello.lmr", "false");
+        System.clearProperty("othello.probcut");
+        var constructor = Class.forName(args[1]).asSubclass(BaseAI.class).getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        // scores[i][d] is the score of position i searched d moves deep.
+        var scores = new int[positions][depth + 1];
+        var random = new Random(size);
+        for (int i = 0; i < positions; ) {
+            // Positions from anywhere in random games, as long as the search does not reach the end of the game.
+            var s = new GameState(size, 1);
+            var moves = random.nextInt(size * size - 4 - depth);
+            for (int m = 0; m < moves && !s.isFinished(); m++) {
+                var legal = s.legalMoves();
+                if (legal.isEmpty()) {
+                    s.changePlayer();
+                    legal = s.legalMoves();
+                }
+                s.insertToken(legal.get(random.nextInt(legal.size())));
+            }
+            if (s.legalMoves().isEmpty()) {
+                continue;
+            }
+            // A new AI for each position, so the transposition table has nothing deeper than the iteration in it.
+            var ai = constructor.newInstance();
+            ai.decideMove(new GameState(s.getBoard(), s.getPlayerInTurn()));
+            var iterations = ai.stats().iterations;
+            if (iterations.size() < depth) {
+                continue;
+            }
+            for (var iteration : iterations) {
+                scores[i][iteration.depth()] = iteration.score();
+            }
+            i++;
+            if (i % 10 == 0) {
+                System.err.println("Searched " + i + " positions");
+            }
+        }
+
+        // Least squares fit of the deep scores to the shallow ones.
+        var parameters = new ArrayList<Parameters>();
+        for (int deep = MIN_DEPTH; deep <= depth; deep++) {
+            for (int shallow = 2 - deep % 2; shallow <= deep / 2; shallow += 2) {
+                double sx = 0, sy = 0, sxx = 0, sxy = 0;
+                for (var score : scores) {
+                    sx += score[shallow];
+                    sy += score[deep];
+                    sxx += (double) score[shallow] * score[shallow];
+                    sxy += (double) score[shallow] * score[deep];
+                }
+                var n = positions;
+                var a = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+                var b = (sy - a * sx) / n;
+                var error = 0.0;
+                for (var score : scores) {
+                    var e = score[deep] - (a * score[shallow] + b);
+                    error += e * e;
+                }
+                var p = new Parameters(deep, shallow, a, b, Math.sqrt(error / n));
+                System.err.printf(Locale.ROOT, "depth %2d from %d: a %.3f, b %.1f, sigma %.1f%n",
+                        deep, shallow, a, b, p.sigma());
+                // Shallow scores that say nothing about the deep ones are no use for cut-offs.
+                if (a > 0) {
+                    parameters.add(p);
+                }
+            }
+        }
+        write(path, parameters);
+        System.err.println("Wrote " + parameters.size() + " parameters to " + path);
+    }
+}
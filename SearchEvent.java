@@ -0,0 +1,54 @@
+/**
+ * Flight recorder event for a call to BaseAI.decideMove, see SearchStats. Record with e.g.
+ * java -XX:StartFlightRecording=filename=othello.jfr ...
+ */
+@jdk.jfr.Name("othello.Search")
+@jdk.jfr.Label("Search")
+@jdk.jfr.Category("Othello")
+@jdk.jfr.Description("A call to BaseAI.decideMove")
+final class SearchEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("AI")
+    String ai;
+    @jdk.jfr.Label("Source")
+    String source;
+    @jdk.jfr.Label("Depth")
+    int depth;
+    @jdk.jfr.Label("Nodes")
+    long nodes;
+    @jdk.jfr.Label("Leaf Evaluations")
+    long leaves;
+    @jdk.jfr.Label("Transposition Table Probes")
+    long probes;
+    @jdk.jfr.Label("Transposition Table Hits")
+    long hits;
+    @jdk.jfr.Label("Re-searches")
+    long researches;
+    @jdk.jfr.Label("Cut-offs")
+    long cutoffs;
+    @jdk.jfr.Label("First Move Cut-off Rate")
+    @jdk.jfr.Percentage
+    double firstMoveCutoffRate;
+    @jdk.jfr.Label("Effective Branching Factor")
+    double branchingFactor;
+    @jdk.jfr.Label("Iterations")
+    String iterations;
+
+    void set(String ai, SearchStats stats) {
+        this.ai = ai;
+        source = stats.source.name();
+        depth = stats.depth;
+        nodes = stats.nodes;
+        leaves = stats.leaves;
+        probes = stats.probes;
+        hits = stats.hits;
+        researches = stats.researches;
+        cutoffs = stats.cutoffs();
+        firstMoveCutoffRate = stats.firstMoveCutoffRate();
+        branchingFactor = stats.branchingFactor();
+        var s = new StringBuilder();
+        for (var iteration : stats.iterations) {
+            s.append(iteration.depth()).append(':').append(iteration.nodes()).append(' ');
+        }
+        iterations = s.toString().trim();
+    }
+}
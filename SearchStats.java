@@ -0,0 +1,108 @@
+import java.util.*;
+
+/**
+ * Statistics of a call to BaseAI.decideMove. Each search thread counts in its own instance without locking, and adds
+ * it to the one for the whole call when it is done.
+ */
+final class SearchStats {
+    // Cut-offs are counted by the index of the move that caused them, with the last one counting all later moves.
+    static final int CUTOFF_INDICES = 8;
+
+    enum Source {
+        // The move was searched with the heuristic
+        SEARCH,
+        // The move was found in the opening book
+        BOOK,
+        // The rest of the game was solved
+        ENDGAME
+    }
+
+    record Iteration(int depth, int score, long nodes, long time) {
+    }
+
+    Source source = Source.SEARCH;
+    long nodes;
+    long leaves;    // Positions evaluated with the heuristic
+    long probes;    // Transposition table lookups
+    long hits;      // Lookups that gave a result without searching
+    long researches;    // Null or aspiration window searches that had to be repeated with a wider window
+    long probCuts;      // Nodes cut off by Multi-ProbCut
+    final long[] cutoffs = new long[CUTOFF_INDICES];
+    int depth;      // The deepest completed iteration, or the number of empty squares that were solved
+    long time;      // Nanoseconds
+    // The iterations of the main search thread, with their score and the nodes searched in each by all threads that
+    // had finished them.
+    final List<Iteration> iterations = new ArrayList<>();
+    // The principal variation of the deepest iteration, with null for a pass. Empty if the move was not searched.
+    final List<Position> pv = new ArrayList<>();
+
+    void cutOff(int moveIndex) {
+        cutoffs[Math.min(moveIndex, CUTOFF_INDICES - 1)]++;
+    }
+
+    synchronized void add(SearchStats other) {
+        nodes += other.nodes;
+        leaves += other.leaves;
+        probes += other.probes;
+        hits += other.hits;
+        researches += other.researches;
+        probCuts += other.probCuts;
+        for (int i = 0; i < CUTOFF_INDICES; i++) {
+            cutoffs[i] += other.cutoffs[i];
+        }
+    }
+
+    // Records an iteration of the main thread, which has searched the given number of nodes so far.
+    synchronized void iteration(int depth, int score, long mainNodes, long time) {
+        var total = nodes + mainNodes;
+        for (var iteration : iterations) {
+            total -= iteration.nodes();
+        }
+        iterations.add(new Iteration(depth, score, total, time));
+    }
+
+    long cutoffs() {
+        return Arrays.stream(cutoffs).sum();
+    }
+
+    /**
+     * Returns the share of the cut-offs that were caused by the first move tried, which says how good the move ordering
+     * is.
+     */
+    double firstMoveCutoffRate() {
+        var cutoffs = cutoffs();
+        return cutoffs == 0 ? 0 : (double) this.cutoffs[0] / cutoffs;
+    }
+
+    /**
+     * Returns the effective branching factor: how many times more nodes the last iteration took than the one before.
+     */
+    synchronized double branchingFactor() {
+        var n = iterations.size();
+        if (n < 2 || iterations.get(n - 2).nodes() == 0) {
+            return 0;
+        }
+        return (double) iterations.get(n - 1).nodes() / iterations.get(n - 2).nodes();
+    }
+
+    @Override
+    public synchronized String toString() {
+        var s = new StringBuilder();
+        s.append(String.format("%s: depth %d, %d nodes, %d leaves, %.1f ms%n", source, depth, nodes, leaves, time / 1e6));
+        s.append(String.format("TT hits %d of %d, EBF %.2f, first move cut-offs %.1f%% of %d, %d re-searches, "
+                + "%d ProbCuts%n", hits, probes, branchingFactor(), 100 * firstMoveCutoffRate(), cutoffs(), researches,
+                probCuts));
+        if (!pv.isEmpty()) {
+            s.append("PV:");
+            for (var move : pv) {
+                s.append(' ').append(move == null ? "pass" : move);
+            }
+            s.append(String.format("%n"));
+        }
+        for (var iteration : iterations) {
+            s.append(String.format("  depth %2d: %10d nodes %9.1f ms, score %d%n",
+                    iteration.depth(), iteration.nodes(), iteration.time() / 1e6, iteration.score()));
+        }
+        return s.toString();
+    }
+}
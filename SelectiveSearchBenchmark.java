@@ -0,0 +1,177 @@
+import java.util.*;
+
+/**
+ * Measures what selective search buys: how much deeper an AI gets in its time per move, and how often it still finds
+ * the move a full width search finds.
+ * <p>
+ * The benchmark runs on a fixed set of positions from seeded random games. For each AI class, the reference move of
+ * each position is found with a full width search to the reference depth. Then each configuration gets its usual time
+ * per move on every position, and the average depth it reached, its speed and how many of its moves agree with the
+ * reference are printed. A configuration is an AI class, optionally with system properties to set while it searches,
+ * e.g.
+ * <pre>
+ * java -Dothello.time=500 SelectiveSearchBenchmark 8 50 10 PatternAI PatternAI:othello.lmr=true \
+ *     PatternAI:othello.probcut=pattern.probcut,othello.probcut.threshold=1.0
+ * </pre>
+ * Moves that are as good as the reference move but not the same count as disagreeing, which is rare with heuristics
+ * that have a wide range of scores. Can also be configured with -Dbenchmark.seed (for the positions).
+ */
+public class SelectiveSearchBenchmark {
+    // The properties of the hooks that turn selective search on, which are cleared for the reference searches.
+    private static final List<String> SELECTIVE = List.of("othello.lmr", "othello.probcut");
+
+    private record Config(String name, Class<? extends BaseAI> ai, Map<String, String> properties) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: java SelectiveSearchBenchmark <size> <positions> <reference depth> "
+                    + "<ai[:property=value,...]> ...");
+            System.exit(1);
+        }
+        var size = Integer.parseInt(args[0]);
+        var count = Integer.parseInt(args[1]);
+        var referenceDepth = Integer.parseInt(args[2]);
+        var configs = new ArrayList<Config>();
+        for (int i = 3; i < args.length; i++) {
+            configs.add(config(args[i]));
+        }
+        // Nothing but the search itself should decide the moves.
+        System.setProperty("othello.endgame", "0");
+        System.setProperty("othello.book", "");
+        System.setProperty("othello.ponder", "false");
+
+        var positions = positions(size, count, referenceDepth, Long.getLong("benchmark.seed", 0));
+        var references = new HashMap<Class<? extends BaseAI>, Position[]>();
+        for (var config : configs) {
+            if (!references.containsKey(config.ai())) {
+                System.err.println("Searching the reference moves of " + config.ai().getName());
+                references.put(config.ai(), references(config.ai(), positions, referenceDepth));
+            }
+        }
+
+        System.out.printf("%-50s %6s %10s %9s %8s%n", "Configuration", "Depth", "Nodes/s", "ms/move", "Agree");
+        for (var config : configs) {
+            var reference = references.get(config.ai());
+            var depth = 0L;
+            var nodes = 0L;
+            var time = 0L;
+            var agree = 0;
+            for (int i = 0; i < positions.size(); i++) {
+                var s = positions.get(i);
+                var ai = withProperties(config.properties(), () -> create(config.ai()));
+                var start = System.nanoTime();
+                var move = withProperties(config.properties(), () -> ai.decideMove(copy(s)));
+                time += System.nanoTime() - start;
+                depth += ai.stats().depth;
+                nodes += ai.stats().nodes;
+                if (move.equals(reference[i])) {
+                    agree++;
+                }
+            }
+            var n = positions.size();
+            System.out.printf("%-50s %6.2f %10.0f %9.1f %7.1f%%%n", config.name(), (double) depth / n,
+                    nodes / (time / 1e9), time / 1e6 / n, 100.0 * agree / n);
+        }
+    }
+
+    private static Position[] references(Class<? extends BaseAI> type, List<GameState> positions, int depth)
+            throws Exception {
+        var properties = new HashMap<String, String>();
+        properties.put("othello.depth", String.valueOf(depth));
+        properties.put("othello.time", String.valueOf(1_000_000_000L));
+        properties.put("othello.aspiration", "0");
+        for (var property : SELECTIVE) {
+            properties.put(property, null);
+        }
+        var moves = new Position[positions.size()];
+        for (int i = 0; i < moves.length; i++) {
+            var s = positions.get(i);
+            // A new AI for each position, like the searches that are compared with it.
+            var ai = withProperties(properties, () -> create(type));
+            moves[i] = withProperties(properties, () -> ai.decideMove(copy(s)));
+        }
+        return moves;
+    }
+
+    private interface Action<T> {
+        T run() throws Exception;
+    }
+
+    // Runs the action with the given system properties set, or cleared for null values, and restores them afterwards.
+    private static <T> T withProperties(Map<String, String> properties, Action<T> action) throws Exception {
+        var old = new HashMap<String, String>();
+        for (var property : properties.entrySet()) {
+            old.put(property.getKey(), System.getProperty(property.getKey()));
+            set(property.getKey(), property.getValue());
+        }
+        try {
+            return action.run();
+        } finally {
+            for (var property : old.entrySet()) {
+                set(property.getKey(), property.getValue());
+            }
+        }
+    }
+
+    private static void set(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static Config config(String arg) throws ReflectiveOperationException {
+        var colon = arg.indexOf(':');
+        var name = colon < 0 ? arg : arg.substring(0, colon);
+        var properties = new LinkedHashMap<String, String>();
+        if (colon >= 0) {
+            for (var property : arg.substring(colon + 1).split(",")) {
+                var equals = property.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected property=value in " + arg);
+                }
+                properties.put(property.substring(0, equals), property.substring(equals + 1));
+            }
+        }
+        var type = Class.forName(name).asSubclass(BaseAI.class);
+        // Fail now rather than after the reference searches.
+        create(type);
+        return new Config(arg, type, properties);
+    }
+
+    // Like in Tournament, this also accepts AIs that are not public.
+    private static BaseAI create(Class<? extends BaseAI> type) throws ReflectiveOperationException {
+        var constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    private static GameState copy(GameState s) {
+        return new GameState(s.getBoard(), s.getPlayerInTurn());
+    }
+
+    // Positions from seeded random games, far enough from the end that the reference search does not reach it. All of
+    // them have a legal move for the player in turn.
+    private static List<GameState> positions(int size, int count, int depth, long seed) {
+        var random = new Random(seed);
+        var positions = new ArrayList<GameState>();
+        while (positions.size() < count) {
+            var s = new GameState(size, 1);
+            var moves = random.nextInt(Math.max(1, size * size - 4 - depth));
+            for (int i = 0; i < moves && !s.isFinished(); i++) {
+                var legal = s.legalMoves();
+                if (legal.isEmpty()) {
+                    s.changePlayer();
+                    legal = s.legalMoves();
+                }
+                s.insertToken(legal.get(random.nextInt(legal.size())));
+            }
+            if (!s.legalMoves().isEmpty()) {
+                positions.add(copy(s));
+            }
+        }
+        return positions;
+    }
+}
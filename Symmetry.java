@@ -0,0 +1,120 @@
+/**
+ * The 8 symmetries of a square board: the rotations and reflections. Symmetry s transposes the board if bit 2 is set,
+ * then mirrors the rows if bit 0 is set and then mirrors the columns if bit 1 is set. Symmetry 0 is the identity.
+ */
+final class Symmetry {
+    static final int COUNT = 8;
+
+    private Symmetry() {
+    }
+
+    /**
+     * A 128-bit position key. For boards with up to 64 squares it holds the tokens of the player in turn and of the
+     * opponent, so different positions never share a key. Larger boards are hashed.
+     */
+    record Key(long high, long low) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            var cmp = Long.compareUnsigned(high, other.high);
+            return cmp != 0 ? cmp : Long.compareUnsigned(low, other.low);
+        }
+    }
+
+    /**
+     * The key of a symmetry class, and the symmetry that takes the state it was computed for to the orientation of the
+     * key.
+     */
+    record Canonical(Key key, int symmetry, int size) {
+        // Maps a square of the original state to the orientation of the key.
+        int toCanonical(int sq) {
+            return square(sq, size, symmetry);
+        }
+
+        // Maps a square in the orientation of the key back to the original state.
+        int fromCanonical(int sq) {
+            return inverse(sq, size, symmetry);
+        }
+    }
+
+    /**
+     * Returns the canonical key of an 8x8 position given as bitboards: the smallest key over all 8 symmetries.
+     */
+    static Canonical canonical(long player, long opponent) {
+        var high = player;
+        var low = opponent;
+        var symmetry = 0;
+        for (int s = 1; s < COUNT; s++) {
+            var p = transform(player, s);
+            var cmp = Long.compareUnsigned(p, high);
+            if (cmp > 0) {
+                continue;
+            }
+            var o = transform(opponent, s);
+            if (cmp < 0 || Long.compareUnsigned(o, low) < 0) {
+                high = p;
+                low = o;
+                symmetry = s;
+            }
+        }
+        return new Canonical(new Key(high, low), symmetry, 8);
+    }
+
+    /**
+     * Applies a symmetry to a bitboard.
+     */
+    static long transform(long x, int symmetry) {
+        if ((symmetry & 4) != 0) x = transpose(x);
+        if ((symmetry & 1) != 0) x = mirrorRows(x);
+        if ((symmetry & 2) != 0) x = Long.reverseBytes(x);
+        return x;
+    }
+
+    /**
+     * Returns the square (col * size + row) that the given square ends up on under the given symmetry.
+     */
+    static int square(int sq, int size, int symmetry) {
+        int col = sq / size, row = sq % size, last = size - 1;
+        if ((symmetry & 4) != 0) {
+            var t = col;
+            col = row;
+            row = t;
+        }
+        if ((symmetry & 1) != 0) row = last - row;
+        if ((symmetry & 2) != 0) col = last - col;
+        return col * size + row;
+    }
+
+    /**
+     * Returns the square that ends up on the given square under the given symmetry.
+     */
+    static int inverse(int sq, int size, int symmetry) {
+        int col = sq / size, row = sq % size, last = size - 1;
+        if ((symmetry & 2) != 0) col = last - col;
+        if ((symmetry & 1) != 0) row = last - row;
+        if ((symmetry & 4) != 0) {
+            var t = col;
+            col = row;
+            row = t;
+        }
+        return col * size + row;
+    }
+
+    // Swaps col and row, i.e. bit col * 8 + row with bit row * 8 + col.
+    private static long transpose(long x) {
+        var t = 0x0F0F0F0F00000000L & (x ^ (x << 28));
+        x ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (x ^ (x << 14));
+        x ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (x ^ (x << 7));
+        x ^= t ^ (t >>> 7);
+        return x;
+    }
+
+    // Reverses the rows of each column, i.e. the bits of each byte.
+    private static long mirrorRows(long x) {
+        x = x >>> 1 & 0x5555555555555555L | (x & 0x5555555555555555L) << 1;
+        x = x >>> 2 & 0x3333333333333333L | (x & 0x3333333333333333L) << 2;
+        x = x >>> 4 & 0x0F0F0F0F0F0F0F0FL | (x & 0x0F0F0F0F0F0F0F0FL) << 4;
+        return x;
+    }
+}
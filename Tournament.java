@@ -0,0 +1,266 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Plays AIs against each other without the GUI, to find out whether a change makes an AI stronger.
+ * <p>
+ * Every pair of AIs plays the given number of games, on as many threads as there are cores. The games start from
+ * random openings, and each opening is played twice with the colours swapped, so neither AI gets the better side of
+ * an opening. Each game gets new instances of the AIs. At the end, it prints the wins, draws and losses of each AI and
+ * pairing, the Elo difference they correspond to with 95% error bars, and how long each AI took per move.
+ * <p>
+ * The AIs get their usual time per move, so for many games set a small one, e.g.
+ * <pre>
+ * java -Dothello.time=100 Tournament 8 200 CornersMovesTokens OthelloAIBob
+ * </pre>
+ * Can also be configured with -Dtournament.opening (number of random moves to start each game with, default 4),
+ * -Dtournament.seed (for the openings) and -Dtournament.threads (default all cores).
+ */
+public class Tournament {
+    // The outcome of a game. times holds the nanoseconds per move of the two AIs, black's first.
+    private record Game(int black, int white, int blackTokens, int whiteTokens, int forfeit, long[][] times) {
+        // 1 for a win for black, 0.5 for a draw and 0 for a loss.
+        double blackScore() {
+            if (forfeit != 0) {
+                return forfeit == 1 ? 0 : 1;
+            }
+            return blackTokens > whiteTokens ? 1 : blackTokens == whiteTokens ? 0.5 : 0;
+        }
+    }
+
+    // Wins, draws and losses of one AI, or of one AI against another.
+    private static final class Record {
+        int wins, draws, losses;
+
+        void add(double score) {
+            if (score == 1) wins++;
+            else if (score == 0) losses++;
+            else draws++;
+        }
+
+        int games() {
+            return wins + draws + losses;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%5d %5d %5d  %s", wins, draws, losses, elo());
+        }
+
+        // The Elo difference that gives the score of this record, with the 95% confidence interval from the spread
+        // of the individual game scores.
+        private String elo() {
+            var n = games();
+            var score = (wins + draws / 2.0) / n;
+            if (wins == n || losses == n) {
+                return wins == n ? "+inf" : "-inf";
+            }
+            var variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                    + losses * Math.pow(score, 2)) / n;
+            var margin = 1.96 * Math.sqrt(variance / n);
+            var low = score - margin <= 0 ? "-inf" : String.format("%+.1f", elo(score - margin));
+            var high = score + margin >= 1 ? "+inf" : String.format("%+.1f", elo(score + margin));
+            return String.format("%+7.1f (%s, %s)", elo(score), low, high);
+        }
+
+        private static double elo(double score) {
+            return -400 * Math.log10(1 / score - 1);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: java Tournament <size> <games per pairing> <ai1> <ai2> [ai3 ...]");
+            System.exit(1);
+        }
+        var size = Integer.parseInt(args[0]);
+        var games = Integer.parseInt(args[1]);
+        var names = Arrays.copyOfRange(args, 2, args.length);
+        if (size < 4 || size % 2 != 0) {
+            System.err.println("Board size should be an even number greater than 2");
+            System.exit(1);
+        }
+        // Fail now rather than in the middle of the tournament.
+        for (var name : names) {
+            create(name);
+        }
+
+        var random = Long.getLong("tournament.seed") == null
+                ? new Random()
+                : new Random(Long.getLong("tournament.seed"));
+        var openings = new ArrayList<List<Position>>();
+        for (int i = 0; i < (games + 1) / 2; i++) {
+            openings.add(opening(size, Integer.getInteger("tournament.opening", 4), random));
+        }
+
+        var threads = Integer.getInteger("tournament.threads", Runtime.getRuntime().availableProcessors());
+        var pool = Executors.newFixedThreadPool(threads);
+        var futures = new ArrayList<Future<Game>>();
+        for (int a = 0; a < names.length; a++) {
+            for (int b = a + 1; b < names.length; b++) {
+                for (int i = 0; i < games; i++) {
+                    // Game 2k and 2k + 1 play opening k with the colours swapped.
+                    var black = i % 2 == 0 ? a : b;
+                    var white = i % 2 == 0 ? b : a;
+                    var opening = openings.get(i / 2);
+                    futures.add(pool.submit(() -> play(names, black, white, size, opening)));
+                }
+            }
+        }
+        pool.shutdown();
+
+        var total = new Record[names.length];
+        var pairs = new Record[names.length][names.length];
+        var times = new ArrayList<List<Long>>();
+        for (int a = 0; a < names.length; a++) {
+            total[a] = new Record();
+            times.add(new ArrayList<>());
+            for (int b = 0; b < names.length; b++) {
+                pairs[a][b] = new Record();
+            }
+        }
+        var start = System.nanoTime();
+        var forfeits = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            Game game;
+            try {
+                game = futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            var score = game.blackScore();
+            total[game.black()].add(score);
+            total[game.white()].add(1 - score);
+            pairs[game.black()][game.white()].add(score);
+            pairs[game.white()][game.black()].add(1 - score);
+            for (var t : game.times()[0]) times.get(game.black()).add(t);
+            for (var t : game.times()[1]) times.get(game.white()).add(t);
+            if (game.forfeit() != 0) {
+                forfeits++;
+            }
+            if ((i + 1) % Math.max(1, futures.size() / 20) == 0 || i + 1 == futures.size()) {
+                var elapsed = (System.nanoTime() - start) / 1e9;
+                System.err.printf("%d/%d games, %.0f games per hour%n", i + 1, futures.size(), (i + 1) / elapsed * 3600);
+            }
+        }
+
+        System.out.printf("%-24s %5s %5s %5s  %s%n", "AI", "Won", "Drawn", "Lost", "Elo (95%)");
+        for (int a = 0; a < names.length; a++) {
+            System.out.printf("%-24s %s%n", names[a], total[a]);
+        }
+        if (names.length > 2) {
+            System.out.println();
+            for (int a = 0; a < names.length; a++) {
+                for (int b = a + 1; b < names.length; b++) {
+                    System.out.printf("%-24s %s%n", names[a] + " - " + names[b], pairs[a][b]);
+                }
+            }
+        }
+        System.out.println();
+        System.out.printf("%-24s %9s %9s %9s %9s %9s%n", "Time per move (ms)", "Average", "50%", "90%", "99%", "Max");
+        for (int a = 0; a < names.length; a++) {
+            var sorted = times.get(a).stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-24s %9.1f %9.1f %9.1f %9.1f %9.1f%n", names[a],
+                    Arrays.stream(sorted).average().orElse(0) / 1e6,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        }
+        if (forfeits > 0) {
+            System.out.println();
+            System.out.println(forfeits + " games were lost by an AI making an illegal move or throwing an exception");
+        }
+    }
+
+    // Plays a game from the given opening. An AI that makes an illegal move or throws loses the game.
+    private static Game play(String[] names, int black, int white, int size, List<Position> opening) throws Exception {
+        var ais = new IOthelloAI[]{create(names[black]), create(names[white])};
+        try {
+            return play(names, black, white, size, opening, ais);
+        } finally {
+            // Every game has new AIs, so the threads of the ones that search with more than one would pile up.
+            for (var ai : ais) {
+                if (ai instanceof AutoCloseable closeable) {
+                    closeable.close();
+                }
+            }
+        }
+    }
+
+    private static Game play(String[] names, int black, int white, int size, List<Position> opening, IOthelloAI[] ais) {
+        var times = new ArrayList<List<Long>>(List.of(new ArrayList<>(), new ArrayList<>()));
+        var s = new GameState(size, 1);
+        for (var move : opening) {
+            // The opening leaves out passes, as a player passes exactly when they have no legal move.
+            if (s.legalMoves().isEmpty()) {
+                s.changePlayer();
+            }
+            if (!s.insertToken(move)) {
+                throw new IllegalStateException("The opening move " + move + " is illegal");
+            }
+        }
+
+        var forfeit = 0;
+        while (!s.isFinished()) {
+            if (s.legalMoves().isEmpty()) {
+                s.changePlayer();
+                continue;
+            }
+            var player = s.getPlayerInTurn();
+            var start = System.nanoTime();
+            Position move;
+            try {
+                move = ais[player - 1].decideMove(new GameState(s.getBoard(), player));
+            } catch (RuntimeException e) {
+                System.err.println(names[player == 1 ? black : white] + " threw " + e);
+                forfeit = player;
+                break;
+            }
+            times.get(player - 1).add(System.nanoTime() - start);
+            if (move == null || !s.insertToken(move)) {
+                System.err.println(names[player == 1 ? black : white] + " made the illegal move " + move);
+                forfeit = player;
+                break;
+            }
+        }
+
+        var tokens = s.countTokens();
+        return new Game(black, white, tokens[0], tokens[1], forfeit, new long[][]{
+                times.get(0).stream().mapToLong(Long::longValue).toArray(),
+                times.get(1).stream().mapToLong(Long::longValue).toArray()
+        });
+    }
+
+    // A random opening of the given number of moves, or fewer if the game ends before.
+    private static List<Position> opening(int size, int moves, Random random) {
+        var s = new GameState(size, 1);
+        var opening = new ArrayList<Position>();
+        while (opening.size() < moves && !s.isFinished()) {
+            var legal = s.legalMoves();
+            if (legal.isEmpty()) {
+                // Not recorded, as play() passes at the same point when it replays the opening.
+                s.changePlayer();
+                continue;
+            }
+            var move = legal.get(random.nextInt(legal.size()));
+            s.insertToken(move);
+            opening.add(move);
+        }
+        return opening;
+    }
+
+    // Unlike Othello.parseGameLogicParam, this also accepts AIs that are not public, such as the ones next to
+    // OthelloAIBob.
+    private static IOthelloAI create(String name) throws ReflectiveOperationException {
+        var constructor = Class.forName(name).asSubclass(IOthelloAI.class).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    // The value below which the given percentage of the sorted times fall, in milliseconds.
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var i = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.*;
+
+/**
+ * Fixed-size table of search results indexed by the Zobrist hash of the searched state. An entry is two longs: the full
+ * hash XOR the packed result, and the packed result:
+ * <pre>
+ *   bits  0-31  score
+ *   bits 32-47  best move square + 1 (0 if there is none)
+ *   bits 48-55  remaining depth the score was searched to
+ *   bits 56-57  bound type (EXACT, LOWER or UPPER)
+ *   bits 58-63  age, i.e. the search that stored the entry
+ * </pre>
+ * Since the bound type is never 0, a packed entry of 0 means that nothing was found.
+ * <p>
+ * The table is shared by all search threads without any locking. Two threads writing the same slot at once can leave
+ * the key of one entry next to the result of the other, but storing the key XOR the result means such a mix no longer
+ * matches any hash, so a probe simply misses instead of returning another position's result.
+ */
+final class TranspositionTable {
+    static final int EXACT = 1;
+    static final int LOWER = 2;     // The score is a lower bound (the search failed high)
+    static final int UPPER = 3;     // The score is an upper bound (the search failed low)
+
+    enum Replacement {
+        // Always overwrite what is in the slot.
+        ALWAYS,
+        // Only overwrite an entry from the current search if the new one was searched at least as deep.
+        DEPTH_PREFERRED
+    }
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private final Replacement replacement;
+    private int age;
+
+    /**
+     * @param bits        The table has 2^bits entries of 16 bytes each.
+     * @param replacement How to decide whether a new entry overwrites the one in its slot.
+     */
+    TranspositionTable(int bits, Replacement replacement) {
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Marks the start of a new search. Entries from earlier searches are kept, but are replaced before entries from
+     * this search.
+     */
+    void newSearch() {
+        age = (age + 1) & 0x3F;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Returns the packed entry for the given hash, or 0 if there is none.
+     */
+    long probe(long key) {
+        var i = (int) key & mask;
+        var entry = data[i];
+        return (keys[i] ^ entry) == key ? entry : 0;
+    }
+
+    void store(long key, int depth, int bound, int score, int move) {
+        var i = (int) key & mask;
+        var old = data[i];
+        if (replacement == Replacement.DEPTH_PREFERRED && old != 0 && (keys[i] ^ old) != key
+                && age(old) == age && depth(old) > depth) {
+            return;
+        }
+
+        var entry = (score & 0xFFFFFFFFL)
+                | (long) (move + 1 & 0xFFFF) << 32
+                | (long) (Math.min(depth, 0xFF)) << 48
+                | (long) bound << 56
+                | (long) age << 58;
+        keys[i] = key ^ entry;
+        data[i] = entry;
+    }
+
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    static int move(long entry) {
+        return (int) (entry >>> 32 & 0xFFFF) - 1;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 48 & 0xFF);
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> 56 & 0x3);
+    }
+
+    static int age(long entry) {
+        return (int) (entry >>> 58);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Zobrist keys for hashing game states. The key of a token is a fixed function of its player and square, so the same
+ * state always gets the same hash, also across games.
+ */
+final class Zobrist {
+    static final long SIDE = mix(0);    // Toggled when player 2 is in turn
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the keys for a board of the given size. The key of a token of player p at (col, row) is found at index
+     * (p - 1) * size * size + col * size + row.
+     */
+    static long[] keys(int size) {
+        var keys = new long[2 * size * size];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = mix(i + 1);
+        }
+        return keys;
+    }
+
+    // The SplitMix64 finalizer, which spreads consecutive numbers over all 64 bits.
+    static long mix(long i) {
+        var z = (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
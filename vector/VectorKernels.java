@@ -0,0 +1,64 @@
+import jdk.incubator.vector.*;
+
+/**
+ * The kernels of Kernels on the incubating Vector API. Only this file needs the jdk.incubator.vector module, so it is
+ * kept out of the main source directory, which compiles without it, and is compiled as an optional extra step into the
+ * same output directory:
+ * <pre>
+ * javac -d out *.java
+ * javac --add-modules jdk.incubator.vector -cp out -d out vector/VectorKernels.java
+ * </pre>
+ * It is used when the program is run with -Dothello.vector=true and --add-modules jdk.incubator.vector. Without it the
+ * scalar kernels are used.
+ * <p>
+ * The mobility kernel walks the four directions of a board in the four lanes of a 256 bit vector, shifting each lane
+ * by its own step, and the pattern sum gathers the weights of as many instances at once as the machine's vectors hold.
+ * Benchmark compares them with the scalar kernels.
+ */
+final class VectorKernels extends Kernels {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_256;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    // The steps of the four directions, and the o tokens each of them can walk over: the steps with a row component
+    // must not walk over the edge rows, or they would wrap around to the next column.
+    private static final LongVector STEPS = LongVector.fromArray(LONGS, new long[]{8, 1, 7, 9}, 0);
+    private static final LongVector WALKABLE = LongVector.fromArray(LONGS,
+            new long[]{-1, BitBoard.INNER_ROWS, BitBoard.INNER_ROWS, BitBoard.INNER_ROWS}, 0);
+
+    /**
+     * Returns whether this machine has 256 bit vectors. Without them the API works, but much slower than the scalar
+     * code.
+     */
+    static boolean available() {
+        return LongVector.SPECIES_PREFERRED.vectorBitSize() >= LONGS.vectorBitSize();
+    }
+
+    @Override
+    long moves(long p, long o) {
+        var player = LongVector.broadcast(LONGS, p);
+        var walkable = LongVector.broadcast(LONGS, o).and(WALKABLE);
+        // Like BitBoard.up() and down(), in all four directions at once.
+        var up = player.lanewise(VectorOperators.LSHL, STEPS).and(walkable);
+        var down = player.lanewise(VectorOperators.LSHR, STEPS).and(walkable);
+        for (int i = 0; i < 5; i++) {
+            up = up.or(up.lanewise(VectorOperators.LSHL, STEPS).and(walkable));
+            down = down.or(down.lanewise(VectorOperators.LSHR, STEPS).and(walkable));
+        }
+        var moves = up.lanewise(VectorOperators.LSHL, STEPS).or(down.lanewise(VectorOperators.LSHR, STEPS));
+        return moves.reduceLanes(VectorOperators.OR) & ~(p | o);
+    }
+
+    @Override
+    int sum(int[] weights, int[] indices) {
+        var sums = IntVector.zero(INTS);
+        var i = 0;
+        for (var bound = INTS.loopBound(indices.length); i < bound; i += INTS.length()) {
+            sums = sums.add(IntVector.fromArray(INTS, weights, 0, indices, i));
+        }
+        var sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < indices.length; i++) {
+            sum += weights[indices[i]];
+        }
+        return sum;
+    }
+}